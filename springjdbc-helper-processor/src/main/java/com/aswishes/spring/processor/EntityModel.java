@@ -0,0 +1,358 @@
+package com.aswishes.spring.processor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * 实体类的映射模型：字段、列名、访问方式和读取方式．与 {@code MapperHelper} 的运行时规则保持一致．
+ * @author lizhou
+ */
+class EntityModel {
+	static final String MAPPER = "com.aswishes.spring.mapper.Mapper";
+	static final String DEFAULT_CONVERTER = "com.aswishes.spring.mapper.DefaultConverter";
+	static final String LONG_CONVERTER = "com.aswishes.spring.mapper.LongTypeConverter";
+	static final String INT_CONVERTER = "com.aswishes.spring.mapper.IntTypeConverter";
+	static final String BOOLEAN_CONVERTER = "com.aswishes.spring.mapper.BooleanTypeConverter";
+	static final String ENUM_CONVERTER = "com.aswishes.spring.mapper.EnumTypeConverter";
+
+	/** 列值的读取方式，与 MapperHelper 中的 ReadType 一致 */
+	enum ReadType {
+		LONG, INT, SHORT, BYTE, DOUBLE, FLOAT, BOOLEAN,
+		LONG_OBJECT, INT_OBJECT, DOUBLE_OBJECT, STRING, BIG_DECIMAL,
+		CONVERT_LONG, CONVERT_INT, CONVERT_BOOLEAN, CONVERT_ENUM, CONVERT,
+		OBJECT
+	}
+
+	static class Property {
+		String name;
+		String column;
+		/** 字段类型的源码名称(已擦除泛型) */
+		String typeName;
+		/** 基本类型对应的包装类型名称，非基本类型与 typeName 相同 */
+		String boxedTypeName;
+		boolean ignore;
+		boolean primaryKey;
+		/** setter 方法名，为 null 时直接写字段 */
+		String setter;
+		/** getter 方法名，为 null 时直接读字段 */
+		String getter;
+		/** 类型转换器的源码名称，默认转换器为 null */
+		String converter;
+		ReadType readType;
+	}
+
+	private final Elements elements;
+	private final Types types;
+	private final TypeElement entity;
+	private final PackageElement pkg;
+	private String packageName;
+	private String generatedSimpleName;
+	private List<Property> properties = new ArrayList<Property>();
+
+	private EntityModel(ProcessingEnvironment env, TypeElement entity) {
+		this.elements = env.getElementUtils();
+		this.types = env.getTypeUtils();
+		this.entity = entity;
+		this.pkg = elements.getPackageOf(entity);
+	}
+
+	static EntityModel of(ProcessingEnvironment env, TypeElement entity) throws UnsupportedEntityException {
+		EntityModel model = new EntityModel(env, entity);
+		model.init();
+		return model;
+	}
+
+	private void init() throws UnsupportedEntityException {
+		checkEntity();
+		packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+		String binaryName = elements.getBinaryName(entity).toString();
+		String simpleName = packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1);
+		generatedSimpleName = simpleName.replace('$', '_') + "_Mapper";
+
+		List<String> primaryKeys = getPrimaryKeys();
+		DeclaredType entityType = (DeclaredType) entity.asType();
+		TypeElement target = entity;
+		while (target != null && !"java.lang.Object".equals(target.getQualifiedName().toString())) {
+			for (VariableElement field : ElementFilter.fieldsIn(target.getEnclosedElements())) {
+				if (field.getModifiers().contains(Modifier.STATIC)) {
+					continue;
+				}
+				addProperty(toProperty(entityType, field, primaryKeys));
+			}
+			TypeMirror superclass = target.getSuperclass();
+			target = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) types.asElement(superclass) : null;
+		}
+	}
+
+	/**
+	 * 字段按子类到父类的顺序加入．父类字段与已有字段映射到同一列时替换已有字段，与 MapperHelper 中父类字段覆盖子类字段的规则一致．
+	 */
+	private void addProperty(Property p) {
+		for (int i = 0; i < properties.size(); i++) {
+			if (properties.get(i).column.equals(p.column)) {
+				properties.remove(i);
+				break;
+			}
+		}
+		properties.add(p);
+	}
+
+	private void checkEntity() throws UnsupportedEntityException {
+		if (entity.getModifiers().contains(Modifier.ABSTRACT)) {
+			throw new UnsupportedEntityException("abstract class");
+		}
+		if (!entity.getTypeParameters().isEmpty()) {
+			throw new UnsupportedEntityException("generic class");
+		}
+		Element element = entity;
+		while (element.getKind() == ElementKind.CLASS) {
+			if (element.getModifiers().contains(Modifier.PRIVATE)) {
+				throw new UnsupportedEntityException("private class");
+			}
+			Element enclosing = element.getEnclosingElement();
+			if (enclosing.getKind() != ElementKind.PACKAGE && !element.getModifiers().contains(Modifier.STATIC)) {
+				throw new UnsupportedEntityException("inner class is not static");
+			}
+			element = enclosing;
+		}
+		List<ExecutableElement> constructors = ElementFilter.constructorsIn(entity.getEnclosedElements());
+		for (ExecutableElement constructor : constructors) {
+			if (constructor.getParameters().isEmpty() && isAccessible(constructor)) {
+				return;
+			}
+		}
+		throw new UnsupportedEntityException("no accessible constructor without parameters");
+	}
+
+	private Property toProperty(DeclaredType entityType, VariableElement field, List<String> primaryKeys) throws UnsupportedEntityException {
+		Property p = new Property();
+		p.name = field.getSimpleName().toString();
+		p.column = p.name;
+		TypeMirror type = types.asMemberOf(entityType, field);
+		p.typeName = types.erasure(type).toString();
+		p.boxedTypeName = type.getKind().isPrimitive() ? types.boxedClass((PrimitiveType) type).getQualifiedName().toString() : p.typeName;
+
+		TypeElement converter = null;
+		AnnotationMirror mapper = getMapper(field);
+		if (mapper != null) {
+			Map<? extends ExecutableElement, ? extends AnnotationValue> values = elements.getElementValuesWithDefaults(mapper);
+			String name = (String) getValue(values, "name");
+			if (name != null && name.trim().length() > 0) {
+				p.column = name;
+			}
+			p.ignore = Boolean.TRUE.equals(getValue(values, "ignore"));
+			TypeMirror converterType = (TypeMirror) getValue(values, "typeConvert");
+			converter = (TypeElement) types.asElement(converterType);
+			if (converter != null && DEFAULT_CONVERTER.equals(converter.getQualifiedName().toString())) {
+				converter = null;
+			}
+		}
+		// transient 字段只读取，不写入，与 EntityMeta 一致
+		if (field.getModifiers().contains(Modifier.TRANSIENT)) {
+			p.ignore = true;
+		}
+		p.primaryKey = primaryKeys.contains(p.column);
+		if (converter != null) {
+			if (!isAccessible(converter)) {
+				throw new UnsupportedEntityException("type converter " + converter + " is not accessible");
+			}
+			p.converter = converter.getQualifiedName().toString();
+		}
+		p.readType = readType(type, converter);
+
+		p.setter = findSetter(entityType, p.name, type);
+		if (p.setter == null && !(isAccessible(field) && !field.getModifiers().contains(Modifier.FINAL))) {
+			throw new UnsupportedEntityException("field " + p.name + " has no accessible setter");
+		}
+		if (!p.ignore) {
+			p.getter = findGetter(entityType, p.name, type);
+			if (p.getter == null && !isAccessible(field)) {
+				throw new UnsupportedEntityException("field " + p.name + " has no accessible getter");
+			}
+		}
+		return p;
+	}
+
+	private ReadType readType(TypeMirror type, TypeElement converter) {
+		if (converter != null) {
+			TypeMirror converterType = converter.asType();
+			if (isSubtype(converterType, LONG_CONVERTER) && (type.getKind() == TypeKind.LONG || isType(type, "java.lang.Long"))) {
+				return ReadType.CONVERT_LONG;
+			} else if (isSubtype(converterType, INT_CONVERTER) && (type.getKind() == TypeKind.INT || isType(type, "java.lang.Integer"))) {
+				return ReadType.CONVERT_INT;
+			} else if (isSubtype(converterType, BOOLEAN_CONVERTER) && (type.getKind() == TypeKind.BOOLEAN || isType(type, "java.lang.Boolean"))) {
+				return ReadType.CONVERT_BOOLEAN;
+			} else if (isSubtype(converterType, ENUM_CONVERTER) && type.getKind() == TypeKind.DECLARED
+					&& types.asElement(type).getKind() == ElementKind.ENUM) {
+				return ReadType.CONVERT_ENUM;
+			}
+			return ReadType.CONVERT;
+		}
+		switch (type.getKind()) {
+		case LONG:
+			return ReadType.LONG;
+		case INT:
+			return ReadType.INT;
+		case SHORT:
+			return ReadType.SHORT;
+		case BYTE:
+			return ReadType.BYTE;
+		case DOUBLE:
+			return ReadType.DOUBLE;
+		case FLOAT:
+			return ReadType.FLOAT;
+		case BOOLEAN:
+			return ReadType.BOOLEAN;
+		default:
+			break;
+		}
+		if (isType(type, "java.lang.Long")) {
+			return ReadType.LONG_OBJECT;
+		} else if (isType(type, "java.lang.Integer")) {
+			return ReadType.INT_OBJECT;
+		} else if (isType(type, "java.lang.Double")) {
+			return ReadType.DOUBLE_OBJECT;
+		} else if (isType(type, "java.lang.String")) {
+			return ReadType.STRING;
+		} else if (isType(type, "java.math.BigDecimal")) {
+			return ReadType.BIG_DECIMAL;
+		}
+		return ReadType.OBJECT;
+	}
+
+	private String findSetter(DeclaredType entityType, String fieldName, TypeMirror fieldType) {
+		String setterName = "set" + capitalize(fieldName);
+		for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(entity))) {
+			if (!method.getSimpleName().contentEquals(setterName) || method.getParameters().size() != 1
+					|| method.getModifiers().contains(Modifier.STATIC) || !isAccessible(method)) {
+				continue;
+			}
+			TypeMirror paramType = ((ExecutableType) types.asMemberOf(entityType, method)).getParameterTypes().get(0);
+			if (types.isSameType(paramType, fieldType)) {
+				return setterName;
+			}
+		}
+		return null;
+	}
+
+	private String findGetter(DeclaredType entityType, String fieldName, TypeMirror fieldType) {
+		List<String> names = new ArrayList<String>();
+		names.add("get" + capitalize(fieldName));
+		if (fieldType.getKind() == TypeKind.BOOLEAN) {
+			names.add("is" + capitalize(fieldName));
+		}
+		for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(entity))) {
+			if (!names.contains(method.getSimpleName().toString()) || !method.getParameters().isEmpty()
+					|| method.getModifiers().contains(Modifier.STATIC) || !isAccessible(method)) {
+				continue;
+			}
+			TypeMirror returnType = ((ExecutableType) types.asMemberOf(entityType, method)).getReturnType();
+			if (types.isSameType(returnType, fieldType)) {
+				return method.getSimpleName().toString();
+			}
+		}
+		return null;
+	}
+
+	private List<String> getPrimaryKeys() {
+		AnnotationMirror mapper = getMapper(entity);
+		if (mapper == null) {
+			return Collections.emptyList();
+		}
+		List<String> result = new ArrayList<String>();
+		Object value = getValue(elements.getElementValuesWithDefaults(mapper), "primaryKey");
+		if (value instanceof List) {
+			for (Object item : (List<?>) value) {
+				result.add(String.valueOf(((AnnotationValue) item).getValue()));
+			}
+		}
+		return result;
+	}
+
+	private AnnotationMirror getMapper(Element element) {
+		for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+			TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+			if (MAPPER.equals(type.getQualifiedName().toString())) {
+				return mirror;
+			}
+		}
+		return null;
+	}
+
+	private Object getValue(Map<? extends ExecutableElement, ? extends AnnotationValue> values, String name) {
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : values.entrySet()) {
+			if (entry.getKey().getSimpleName().contentEquals(name)) {
+				return entry.getValue().getValue();
+			}
+		}
+		return null;
+	}
+
+	/** 生成类与实体类在同一个包，可以访问 public 成员和同一个包内的非 private 成员 */
+	private boolean isAccessible(Element member) {
+		if (member.getModifiers().contains(Modifier.PUBLIC)) {
+			return true;
+		}
+		if (member.getModifiers().contains(Modifier.PRIVATE)) {
+			return false;
+		}
+		return elements.getPackageOf(member).equals(pkg);
+	}
+
+	private boolean isType(TypeMirror type, String qualifiedName) {
+		return type.getKind() == TypeKind.DECLARED
+				&& ((TypeElement) types.asElement(type)).getQualifiedName().contentEquals(qualifiedName);
+	}
+
+	private boolean isSubtype(TypeMirror type, String qualifiedName) {
+		TypeElement element = elements.getTypeElement(qualifiedName);
+		return element != null && types.isAssignable(type, types.erasure(element.asType()));
+	}
+
+	private static String capitalize(String name) {
+		char[] arr = name.toCharArray();
+		arr[0] = Character.toUpperCase(arr[0]);
+		return new String(arr);
+	}
+
+	String getPackageName() {
+		return packageName;
+	}
+
+	String getGeneratedSimpleName() {
+		return generatedSimpleName;
+	}
+
+	String getGeneratedName() {
+		return packageName.isEmpty() ? generatedSimpleName : packageName + "." + generatedSimpleName;
+	}
+
+	String getEntityName() {
+		return entity.getQualifiedName().toString();
+	}
+
+	List<Property> getProperties() {
+		return properties;
+	}
+}
@@ -0,0 +1,71 @@
+package com.aswishes.spring.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.JavaFileObject;
+
+/**
+ * 为使用 {@code @Mapper} 注解的实体类生成 RowMapper 和 insert/update/delete 参数绑定器．
+ * 生成类继承 {@code GeneratedRowMapper}，运行时由 {@code MapperHelper.getMapper} 优先使用．
+ * 实体必须有生成类可以调用的无参构造器(public、protected 或包访问权限)，生成类与实体在同一个包，逐行通过 new 创建实体．
+ * 无法生成的实体(没有可访问的无参构造器、setter/getter 或字段等)只输出提示，运行时仍然使用反射映射．
+ * 父类字段与子类字段映射到同一列时使用父类字段，与反射映射一致．
+ * @author lizhou
+ */
+@SupportedAnnotationTypes(EntityModel.MAPPER)
+public class MapperProcessor extends AbstractProcessor {
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		TypeElement mapperType = processingEnv.getElementUtils().getTypeElement(EntityModel.MAPPER);
+		if (mapperType == null) {
+			return false;
+		}
+		Set<TypeElement> entities = new LinkedHashSet<TypeElement>();
+		for (Element element : roundEnv.getElementsAnnotatedWith(mapperType)) {
+			if (element.getKind() == ElementKind.CLASS) {
+				entities.add((TypeElement) element);
+			} else if (element.getKind() == ElementKind.FIELD && element.getEnclosingElement().getKind() == ElementKind.CLASS) {
+				entities.add((TypeElement) element.getEnclosingElement());
+			}
+		}
+		for (TypeElement entity : entities) {
+			EntityModel model;
+			try {
+				model = EntityModel.of(processingEnv, entity);
+			} catch (UnsupportedEntityException e) {
+				processingEnv.getMessager().printMessage(Kind.NOTE,
+						"No mapper generated, reflection will be used at runtime: " + e.getMessage(), entity);
+				continue;
+			}
+			try {
+				JavaFileObject file = processingEnv.getFiler().createSourceFile(model.getGeneratedName(), entity);
+				Writer writer = file.openWriter();
+				try {
+					writer.write(new MapperWriter(model).write());
+				} finally {
+					writer.close();
+				}
+			} catch (IOException e) {
+				processingEnv.getMessager().printMessage(Kind.ERROR, "Write generated mapper error: " + e.getMessage(), entity);
+			}
+		}
+		return false;
+	}
+}
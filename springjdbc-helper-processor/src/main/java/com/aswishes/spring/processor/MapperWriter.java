@@ -0,0 +1,219 @@
+package com.aswishes.spring.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.aswishes.spring.processor.EntityModel.Property;
+
+/**
+ * 输出生成类的源码．
+ * @author lizhou
+ */
+class MapperWriter {
+	private final EntityModel model;
+	private final StringBuilder out = new StringBuilder(4096);
+
+	MapperWriter(EntityModel model) {
+		this.model = model;
+	}
+
+	String write() {
+		String entity = model.getEntityName();
+		List<Property> properties = model.getProperties();
+		List<Property> insertProperties = new ArrayList<Property>();
+		List<Property> updateProperties = new ArrayList<Property>();
+		List<Property> pkProperties = new ArrayList<Property>();
+		for (Property p : properties) {
+			if (p.ignore) {
+				continue;
+			}
+			insertProperties.add(p);
+			if (p.primaryKey) {
+				pkProperties.add(p);
+			} else {
+				updateProperties.add(p);
+			}
+		}
+
+		if (!model.getPackageName().isEmpty()) {
+			line("package " + model.getPackageName() + ";");
+			line("");
+		}
+		line("import java.sql.ResultSet;");
+		line("import java.sql.SQLException;");
+		line("");
+		line("import com.aswishes.spring.mapper.GeneratedRowMapper;");
+		line("");
+		line("/**");
+		line(" * Generated by springjdbc-helper-processor from {@link " + entity + "}. Do not edit.");
+		line(" */");
+		line("@SuppressWarnings({ \"unchecked\", \"rawtypes\" })");
+		line("public final class " + model.getGeneratedSimpleName() + " extends GeneratedRowMapper<" + entity + "> {");
+		line("\tprivate static final String[] COLUMNS = " + columns(properties) + ";");
+		line("\tprivate static final String[] INSERT_COLUMNS = " + columns(insertProperties) + ";");
+		line("\tprivate static final String[] UPDATE_COLUMNS = " + columns(updateProperties) + ";");
+		line("\tprivate static final String[] PRIMARY_KEY_COLUMNS = " + columns(pkProperties) + ";");
+		for (int i = 0; i < properties.size(); i++) {
+			Property p = properties.get(i);
+			if (p.converter != null) {
+				line("\tprivate static final " + p.converter + " CONVERTER_" + i + " = new " + p.converter + "();");
+			}
+		}
+		line("");
+		line("\tpublic " + model.getGeneratedSimpleName() + "() {");
+		line("\t\tsuper(" + entity + ".class, COLUMNS, INSERT_COLUMNS, UPDATE_COLUMNS, PRIMARY_KEY_COLUMNS);");
+		line("\t}");
+		line("");
+		line("\t@Override");
+		line("\tprotected " + entity + " mapRow(ResultSet rs, int[] columnIndexes) throws SQLException {");
+		line("\t\t" + entity + " o = new " + entity + "();");
+		line("\t\tint i;");
+		for (int i = 0; i < properties.size(); i++) {
+			writeRead(properties.get(i), i);
+		}
+		line("\t\treturn o;");
+		line("\t}");
+		writeValues("insertValues", insertProperties, null);
+		writeValues("updateValues", updateProperties, pkProperties);
+		writeValues("primaryKeyValues", pkProperties, null);
+		line("}");
+		return out.toString();
+	}
+
+	private void writeRead(Property p, int index) {
+		line("\t\tif ((i = columnIndexes[" + index + "]) > 0) {");
+		String converter = "CONVERTER_" + index;
+		switch (p.readType) {
+		case LONG:
+			readPrimitive(p, "long", "rs.getLong(i)");
+			break;
+		case INT:
+			readPrimitive(p, "int", "rs.getInt(i)");
+			break;
+		case SHORT:
+			readPrimitive(p, "short", "rs.getShort(i)");
+			break;
+		case BYTE:
+			readPrimitive(p, "byte", "rs.getByte(i)");
+			break;
+		case DOUBLE:
+			readPrimitive(p, "double", "rs.getDouble(i)");
+			break;
+		case FLOAT:
+			readPrimitive(p, "float", "rs.getFloat(i)");
+			break;
+		case BOOLEAN:
+			readPrimitive(p, "boolean", "rs.getBoolean(i)");
+			break;
+		case LONG_OBJECT:
+			line("\t\t\tlong v = rs.getLong(i);");
+			line("\t\t\t" + assign(p, "rs.wasNull() ? null : Long.valueOf(v)"));
+			break;
+		case INT_OBJECT:
+			line("\t\t\tint v = rs.getInt(i);");
+			line("\t\t\t" + assign(p, "rs.wasNull() ? null : Integer.valueOf(v)"));
+			break;
+		case DOUBLE_OBJECT:
+			line("\t\t\tdouble v = rs.getDouble(i);");
+			line("\t\t\t" + assign(p, "rs.wasNull() ? null : Double.valueOf(v)"));
+			break;
+		case STRING:
+			line("\t\t\t" + assign(p, "rs.getString(i)"));
+			break;
+		case BIG_DECIMAL:
+			line("\t\t\t" + assign(p, "rs.getBigDecimal(i)"));
+			break;
+		case CONVERT_LONG:
+			readConverted(p, "long", converter + ".convertLong(rs, i)");
+			break;
+		case CONVERT_INT:
+			readConverted(p, "int", converter + ".convertInt(rs, i)");
+			break;
+		case CONVERT_BOOLEAN:
+			readConverted(p, "boolean", converter + ".convertBoolean(rs, i)");
+			break;
+		case CONVERT_ENUM:
+			line("\t\t\t" + assign(p, converter + ".convertEnum(rs, i, " + p.typeName + ".class)"));
+			break;
+		case CONVERT:
+			line("\t\t\t" + assign(p, "(" + p.boxedTypeName + ") " + converter + ".convert(rs.getObject(i))"));
+			break;
+		default:
+			line("\t\t\t" + assign(p, "(" + p.boxedTypeName + ") rs.getObject(i)"));
+			break;
+		}
+		line("\t\t}");
+	}
+
+	/** SQL NULL 保留基本类型字段的默认值 */
+	private void readPrimitive(Property p, String type, String read) {
+		line("\t\t\t" + type + " v = " + read + ";");
+		line("\t\t\tif (!rs.wasNull()) {");
+		line("\t\t\t\t" + assign(p, "v"));
+		line("\t\t\t}");
+	}
+
+	/** 包装类型字段在转换器读取到 SQL NULL 时写入 null，基本类型字段使用转换器的结果 */
+	private void readConverted(Property p, String type, String read) {
+		if (p.typeName.equals(type)) {
+			line("\t\t\t" + assign(p, read));
+			return;
+		}
+		line("\t\t\t" + type + " v = " + read + ";");
+		line("\t\t\t" + assign(p, "rs.wasNull() ? null : " + p.typeName + ".valueOf(v)"));
+	}
+
+	private void writeValues(String method, List<Property> properties, List<Property> appendProperties) {
+		List<String> values = new ArrayList<String>();
+		for (Property p : properties) {
+			values.add(get(p));
+		}
+		if (appendProperties != null) {
+			for (Property p : appendProperties) {
+				values.add(get(p));
+			}
+		}
+		line("");
+		line("\t@Override");
+		line("\tpublic Object[] " + method + "(" + model.getEntityName() + " o) {");
+		line("\t\treturn new Object[] { " + join(values) + " };");
+		line("\t}");
+	}
+
+	private String assign(Property p, String value) {
+		if (p.setter != null) {
+			return "o." + p.setter + "(" + value + ");";
+		}
+		return "o." + p.name + " = " + value + ";";
+	}
+
+	private String get(Property p) {
+		if (p.getter != null) {
+			return "o." + p.getter + "()";
+		}
+		return "o." + p.name;
+	}
+
+	private String columns(List<Property> properties) {
+		List<String> names = new ArrayList<String>();
+		for (Property p : properties) {
+			names.add("\"" + p.column.replace("\\", "\\\\").replace("\"", "\\\"") + "\"");
+		}
+		return "{ " + join(names) + " }";
+	}
+
+	private static String join(List<String> values) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < values.size(); i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(values.get(i));
+		}
+		return sb.toString();
+	}
+
+	private void line(String s) {
+		out.append(s).append('\n');
+	}
+}
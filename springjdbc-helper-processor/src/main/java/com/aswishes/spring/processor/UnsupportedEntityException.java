@@ -0,0 +1,13 @@
+package com.aswishes.spring.processor;
+
+/**
+ * 实体类无法生成映射类．
+ * @author lizhou
+ */
+class UnsupportedEntityException extends Exception {
+	private static final long serialVersionUID = 4286210950712315830L;
+
+	UnsupportedEntityException(String msg) {
+		super(msg);
+	}
+}
@@ -0,0 +1,177 @@
+package com.aswishes.spring.processor;
+
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static com.google.testing.compile.Compiler.javac;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.JavaFileObject;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.core.NestedRuntimeException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.aswishes.spring.mapper.EntityMeta;
+import com.aswishes.spring.mapper.GeneratedRowMapper;
+import com.aswishes.spring.mapper.Mapper;
+import com.aswishes.spring.mapper.MapperHelper;
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.JavaFileObjects;
+
+/**
+ * 同一个实体分别使用生成的映射类和反射映射读取同一结果集，逐个字段比较．
+ */
+public class MapperProcessorTest {
+	private static JdbcTemplate jdbcTemplate;
+
+	@BeforeClass
+	public static void setUp() {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(
+				"jdbc:h2:mem:processor;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE", "sa", "");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("create table m_item (id bigint primary key, total bigint, amount int, name varchar(32), flag int, active int, code varchar(8))");
+		jdbcTemplate.update("insert into m_item values (1, 10, 5, 'apple', 1, 1, 'A1')");
+		jdbcTemplate.update("insert into m_item values (2, null, null, null, null, null, null)");
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		jdbcTemplate.execute("drop table m_item");
+	}
+
+	@Test
+	public void testGeneratedMatchesReflection() throws Exception {
+		Compilation compilation = javac()
+				.withProcessors(new MapperProcessor())
+				.withClasspath(classpath(Mapper.class, RowMapper.class, DataAccessException.class, NestedRuntimeException.class))
+				.compile(
+						JavaFileObjects.forSourceLines("test.Base",
+								"package test;",
+								"public class Base {",
+								"	String code;",
+								"}"),
+						JavaFileObjects.forSourceLines("test.Item",
+								"package test;",
+								"import com.aswishes.spring.mapper.Mapper;",
+								"import com.aswishes.spring.mapper.NumberBooleanConverter;",
+								"@Mapper(tableName = \"m_item\", primaryKey = \"id\")",
+								"public class Item extends Base {",
+								"	Long id;",
+								"	long total = -1;",
+								"	Integer amount;",
+								"	String name;",
+								"	@Mapper(typeConvert = NumberBooleanConverter.class)",
+								"	Boolean flag = Boolean.TRUE;",
+								"	@Mapper(typeConvert = NumberBooleanConverter.class)",
+								"	boolean active = true;",
+								"	@Mapper(name = \"code\")",
+								"	String alias;",
+								"}"));
+		assertThat(compilation).succeeded();
+		assertThat(compilation).generatedSourceFile("test.Item_Mapper");
+
+		Map<String, byte[]> classes = new HashMap<String, byte[]>();
+		for (JavaFileObject file : compilation.generatedFiles()) {
+			if (file.getKind() == JavaFileObject.Kind.CLASS) {
+				String name = file.getName();
+				name = name.substring(name.indexOf("test/"), name.length() - ".class".length()).replace('/', '.');
+				classes.put(name, read(file));
+			}
+		}
+		Map<String, byte[]> entities = new HashMap<String, byte[]>(classes);
+		entities.remove("test.Item_Mapper");
+		Class<?> reflected = new BytesClassLoader(entities).loadClass("test.Item");
+		Class<?> generated = new BytesClassLoader(classes).loadClass("test.Item");
+
+		RowMapper<?> reflectedMapper = MapperHelper.getMapper(reflected);
+		RowMapper<?> generatedMapper = MapperHelper.getMapper(generated);
+		assertTrue(!(reflectedMapper instanceof GeneratedRowMapper));
+		assertTrue(generatedMapper instanceof GeneratedRowMapper);
+
+		List<?> expected = jdbcTemplate.query("select * from m_item order by id", reflectedMapper);
+		List<?> actual = jdbcTemplate.query("select * from m_item order by id", generatedMapper);
+		assertEquals(2, actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(fieldValues(expected.get(i)), fieldValues(actual.get(i)));
+		}
+		assertEquals("A1", fieldValues(actual.get(0)).get("code"));
+		assertEquals(null, fieldValues(actual.get(0)).get("alias"));
+		assertEquals(null, fieldValues(actual.get(1)).get("flag"));
+
+		assertArrayEquals(EntityMeta.forClass(reflected).getColumns(), EntityMeta.forClass(generated).getColumns());
+		assertEquals(Arrays.asList("id", "total", "amount", "name", "flag", "active", "code"),
+				Arrays.asList(EntityMeta.forClass(generated).getColumns()));
+	}
+
+	private static Map<String, Object> fieldValues(Object entity) throws IllegalAccessException {
+		Map<String, Object> values = new HashMap<String, Object>();
+		Class<?> targetClass = entity.getClass();
+		while (targetClass != Object.class) {
+			for (Field field : targetClass.getDeclaredFields()) {
+				field.setAccessible(true);
+				values.put(field.getName(), field.get(entity));
+			}
+			targetClass = targetClass.getSuperclass();
+		}
+		return values;
+	}
+
+	private static List<File> classpath(Class<?>... classes) throws URISyntaxException {
+		List<File> files = new ArrayList<File>();
+		for (Class<?> clazz : classes) {
+			files.add(new File(clazz.getProtectionDomain().getCodeSource().getLocation().toURI()));
+		}
+		return files;
+	}
+
+	private static byte[] read(JavaFileObject file) throws IOException {
+		InputStream in = file.openInputStream();
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buf = new byte[4096];
+			int n;
+			while ((n = in.read(buf)) > 0) {
+				out.write(buf, 0, n);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static class BytesClassLoader extends ClassLoader {
+		private final Map<String, byte[]> classes;
+
+		BytesClassLoader(Map<String, byte[]> classes) {
+			super(MapperProcessorTest.class.getClassLoader());
+			this.classes = classes;
+		}
+
+		@Override
+		protected Class<?> findClass(String name) throws ClassNotFoundException {
+			byte[] bytes = classes.get(name);
+			if (bytes == null) {
+				throw new ClassNotFoundException(name);
+			}
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+}
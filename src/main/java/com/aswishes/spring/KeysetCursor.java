@@ -0,0 +1,170 @@
+package com.aswishes.spring;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import com.aswishes.spring.Predicate.Comparison;
+
+/**
+ * 键集分页的游标．记录上一页最后一行的排序列的值，编码为 URL 安全的字符串．
+ * 只支持字符串、数字、布尔和日期时间类型(包括 LocalDate, LocalDateTime, OffsetDateTime)，不使用 java 序列化，客户端篡改的游标只会成为普通的查询参数．
+ * 游标中包含完整的排序条件(如 age desc,id asc)，用于不同排序条件的游标会被拒绝．
+ * @author lizhou
+ */
+public final class KeysetCursor {
+
+	private KeysetCursor() {
+	}
+
+	/**
+	 * @param orders 排序条件
+	 * @param values 最后一行排序列的值，与 orders 一一对应
+	 * @return 游标
+	 */
+	public static String encode(List<Comparison> orders, Object[] values) {
+		if (values.length != orders.size()) {
+			throw new IllegalArgumentException("Cursor values must match the order by restrictions.");
+		}
+		StringBuilder sb = new StringBuilder(32);
+		write(sb, 'S', orderSpec(orders));
+		for (int i = 0; i < values.length; i++) {
+			write(sb, values[i], orders.get(i).getColumn());
+		}
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @param token 游标
+	 * @param orders 排序条件，必须与生成游标时相同
+	 * @return 排序列的值
+	 */
+	public static Object[] decode(String token, List<Comparison> orders) {
+		List<Object> values = new ArrayList<Object>(orders.size() + 1);
+		try {
+			String s = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+			int pos = 0;
+			while (pos < s.length()) {
+				char tag = s.charAt(pos);
+				int colon = s.indexOf(':', pos + 1);
+				int length = Integer.parseInt(s.substring(pos + 1, colon));
+				String text = s.substring(colon + 1, colon + 1 + length);
+				values.add(read(tag, text));
+				pos = colon + 1 + length;
+			}
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Invalid cursor: " + token, e);
+		}
+		if (values.size() != orders.size() + 1 || !orderSpec(orders).equals(values.get(0))) {
+			throw new IllegalArgumentException("Cursor does not match the order by restrictions.");
+		}
+		return values.subList(1, values.size()).toArray();
+	}
+
+	private static String orderSpec(List<Comparison> orders) {
+		StringBuilder sb = new StringBuilder(orders.size() * 16);
+		for (Comparison order : orders) {
+			if (sb.length() > 0) {
+				sb.append(',');
+			}
+			sb.append(order.getColumn().trim()).append(order.getOperator() == Operator.ORDER_DESC ? " desc" : " asc");
+		}
+		return sb.toString();
+	}
+
+	private static void write(StringBuilder sb, Object value, String column) {
+		if (value instanceof String) {
+			write(sb, 'S', (String) value);
+		} else if (value instanceof Integer) {
+			write(sb, 'I', value.toString());
+		} else if (value instanceof Long) {
+			write(sb, 'J', value.toString());
+		} else if (value instanceof Short) {
+			write(sb, 'H', value.toString());
+		} else if (value instanceof BigDecimal) {
+			write(sb, 'N', value.toString());
+		} else if (value instanceof BigInteger) {
+			write(sb, 'G', value.toString());
+		} else if (value instanceof Double) {
+			write(sb, 'D', value.toString());
+		} else if (value instanceof Float) {
+			write(sb, 'F', value.toString());
+		} else if (value instanceof Boolean) {
+			write(sb, 'Z', value.toString());
+		} else if (value instanceof Timestamp) {
+			Timestamp t = (Timestamp) value;
+			write(sb, 'T', t.getTime() + "." + t.getNanos());
+		} else if (value instanceof java.sql.Date) {
+			write(sb, 'd', String.valueOf(((java.sql.Date) value).getTime()));
+		} else if (value instanceof Time) {
+			write(sb, 't', String.valueOf(((Time) value).getTime()));
+		} else if (value instanceof java.util.Date) {
+			write(sb, 'T', ((java.util.Date) value).getTime() + ".-1");
+		} else if (value instanceof LocalDateTime) {
+			write(sb, 'M', value.toString());
+		} else if (value instanceof LocalDate) {
+			write(sb, 'L', value.toString());
+		} else if (value instanceof OffsetDateTime) {
+			write(sb, 'O', value.toString());
+		} else if (value == null) {
+			throw new IllegalStateException("Keyset column can not be null: " + column);
+		} else {
+			throw new IllegalStateException("Unsupported keyset column type: " + column + ", " + value.getClass().getName());
+		}
+	}
+
+	private static void write(StringBuilder sb, char tag, String text) {
+		sb.append(tag).append(text.length()).append(':').append(text);
+	}
+
+	private static Object read(char tag, String text) {
+		switch (tag) {
+			case 'S':
+				return text;
+			case 'I':
+				return Integer.valueOf(text);
+			case 'J':
+				return Long.valueOf(text);
+			case 'H':
+				return Short.valueOf(text);
+			case 'N':
+				return new BigDecimal(text);
+			case 'G':
+				return new BigInteger(text);
+			case 'D':
+				return Double.valueOf(text);
+			case 'F':
+				return Float.valueOf(text);
+			case 'Z':
+				return Boolean.valueOf(text);
+			case 'T':
+				int dot = text.indexOf('.');
+				Timestamp t = new Timestamp(Long.parseLong(text.substring(0, dot)));
+				int nanos = Integer.parseInt(text.substring(dot + 1));
+				if (nanos >= 0) {
+					t.setNanos(nanos);
+				}
+				return t;
+			case 'd':
+				return new java.sql.Date(Long.parseLong(text));
+			case 't':
+				return new Time(Long.parseLong(text));
+			case 'M':
+				return LocalDateTime.parse(text);
+			case 'L':
+				return LocalDate.parse(text);
+			case 'O':
+				return OffsetDateTime.parse(text);
+			default:
+				throw new IllegalArgumentException("Unknown cursor value type: " + tag);
+		}
+	}
+}
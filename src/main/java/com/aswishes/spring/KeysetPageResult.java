@@ -0,0 +1,68 @@
+package com.aswishes.spring;
+
+import java.util.List;
+
+/**
+ * 键集分页包装器．从游标之后读取一页，耗时与页的深度无关；不查询总记录数，没有页码．
+ * @author lizhou
+ * @param <T> 分页数据的类型
+ */
+public abstract class KeysetPageResult<T> {
+	/** 每页数量 */
+	private final int pageSize;
+	/** 本页的游标，第一页为 null */
+	private String cursor;
+	/** 下一页的游标，没有下一页时为 null */
+	private String nextCursor;
+	/** 分页数据 */
+	private List<T> result;
+
+	public KeysetPageResult(int pageSize) {
+		if (pageSize <= 0) {
+			throw new IllegalArgumentException("每页的记录数量应当 > 0");
+		}
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * @param cursor 上一页的 {@link #getNextCursor()}，第一页为 null
+	 * @return 分页数据
+	 */
+	public List<T> paging(String cursor) throws Exception {
+		this.cursor = cursor;
+		this.nextCursor = null;
+		result = queryAfter(cursor, pageSize);
+		return result;
+	}
+
+	/**
+	 * 读取游标之后的一页，有下一页时需要调用 {@link #setNextCursor(String)}．
+	 * @param cursor 游标，第一页为 null
+	 * @param pageSize 每页数量
+	 * @return 分页数据
+	 */
+	protected abstract List<T> queryAfter(String cursor, int pageSize) throws Exception;
+
+	public List<T> getResult() {
+		return result;
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	public String getCursor() {
+		return cursor;
+	}
+
+	/**
+	 * @return 下一页的游标，没有下一页时为 null
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public void setNextCursor(String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+}
@@ -0,0 +1,83 @@
+package com.aswishes.spring;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 条件的比较类型．{@link Restriction} 创建时解析一次，生成 sql 和绑定参数时按枚举分支，不再比较字符串．
+ * @author lizhou
+ */
+public enum Operator {
+	EQ(Restriction.EQ, Arity.ONE),
+	NOT_EQ(Restriction.NOT_EQ, Arity.ONE),
+	LT(Restriction.LT, Arity.ONE),
+	GT(Restriction.GT, Arity.ONE),
+	LE(Restriction.LE, Arity.ONE),
+	GE(Restriction.GE, Arity.ONE),
+	LIKE(Restriction.LIKE, Arity.ONE),
+	NOT_LIKE(Restriction.NOT_LIKE, Arity.ONE),
+	BETWEEN(Restriction.BETWEEN, Arity.TWO),
+	IN(Restriction.IN, Arity.MANY),
+	NOT_IN(Restriction.NOT_IN, Arity.MANY),
+	IS_NULL(Restriction.IS_NULL, Arity.NONE),
+	IS_NOT_NULL(Restriction.IS_NOT_NULL, Arity.NONE),
+	ORDER_ASC(Restriction.ORDER_ASC, Arity.ORDER),
+	ORDER_DESC(Restriction.ORDER_DESC, Arity.ORDER),
+	/** 括号中的一组条件，见 {@link Restriction#group(Restriction...)} */
+	GROUP(Restriction.GROUP, Arity.GROUP);
+
+	/** 参数个数 */
+	public enum Arity {
+		/** 一个值，值为 null 时条件不生效 */
+		ONE,
+		/** between 的两个值 */
+		TWO,
+		/** in, not in 的多个值，没有值时条件不生效 */
+		MANY,
+		/** is null, is not null */
+		NONE,
+		/** order by */
+		ORDER,
+		/** 子条件 */
+		GROUP
+	}
+
+	private static final Map<String, Operator> SYMBOLS = new HashMap<String, Operator>();
+	static {
+		for (Operator operator : values()) {
+			SYMBOLS.put(operator.symbol, operator);
+		}
+	}
+
+	private final String symbol;
+	private final Arity arity;
+
+	private Operator(String symbol, Arity arity) {
+		this.symbol = symbol;
+		this.arity = arity;
+	}
+
+	/**
+	 * @param type 比较类型，如 "=", "in", "is null"，不区分大小写
+	 * @return 对应的枚举，无法识别时返回 null
+	 */
+	public static Operator of(String type) {
+		if (type == null) {
+			return null;
+		}
+		Operator operator = SYMBOLS.get(type);
+		return operator != null ? operator : SYMBOLS.get(type.toLowerCase(Locale.ROOT));
+	}
+
+	/**
+	 * @return sql 中的比较符
+	 */
+	public String getSymbol() {
+		return symbol;
+	}
+
+	public Arity getArity() {
+		return arity;
+	}
+}
@@ -0,0 +1,202 @@
+package com.aswishes.spring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 编译后的条件树，不可变．由 {@link #compile(List)} 从 {@link Restriction} 生成：
+ * 无效的条件（未匹配、值为 null、in 没有值）在编译时去掉，and, or 按 sql 的优先级组成嵌套的分组，
+ * order by 单独保存．生成 sql 和绑定参数由 {@link PredicateRenderer} 一次遍历完成．
+ * @author lizhou
+ */
+public abstract class Predicate {
+
+	public abstract void accept(Visitor visitor);
+
+	public interface Visitor {
+		void visitComparison(Comparison comparison);
+		void visitJunction(Junction junction);
+		void visitClause(Clause clause);
+	}
+
+	/**
+	 * 单个比较：列、比较类型和绑定值．
+	 */
+	public static final class Comparison extends Predicate {
+		private final Operator operator;
+		private final String column;
+		private final List<Object> values;
+
+		Comparison(Operator operator, String column, List<Object> values) {
+			this.operator = operator;
+			this.column = column;
+			this.values = Collections.unmodifiableList(values);
+		}
+
+		public Operator getOperator() {
+			return operator;
+		}
+
+		public String getColumn() {
+			return column;
+		}
+
+		/**
+		 * @return 绑定值的只读视图，不复制条件中的列表．is null, is not null 和 order by 为空列表
+		 */
+		public List<Object> getValues() {
+			return values;
+		}
+
+		@Override
+		public void accept(Visitor visitor) {
+			visitor.visitComparison(this);
+		}
+	}
+
+	/**
+	 * 用 and 或 or 连接的一组条件．
+	 */
+	public static final class Junction extends Predicate {
+		private final boolean or;
+		private final List<Predicate> children;
+
+		Junction(boolean or, List<Predicate> children) {
+			this.or = or;
+			this.children = Collections.unmodifiableList(children);
+		}
+
+		public boolean isOr() {
+			return or;
+		}
+
+		public List<Predicate> getChildren() {
+			return children;
+		}
+
+		@Override
+		public void accept(Visitor visitor) {
+			visitor.visitJunction(this);
+		}
+	}
+
+	/**
+	 * where 条件和 order by．
+	 */
+	public static final class Clause extends Predicate {
+		private final Predicate where;
+		private final List<Comparison> orders;
+
+		Clause(Predicate where, List<Comparison> orders) {
+			this.where = where;
+			this.orders = Collections.unmodifiableList(orders);
+		}
+
+		/**
+		 * @return where 条件，没有有效条件时为 null
+		 */
+		public Predicate getWhere() {
+			return where;
+		}
+
+		public List<Comparison> getOrders() {
+			return orders;
+		}
+
+		public boolean isEmpty() {
+			return where == null && orders.isEmpty();
+		}
+
+		@Override
+		public void accept(Visitor visitor) {
+			visitor.visitClause(this);
+		}
+	}
+
+	/**
+	 * @param restrictions 条件，可以包含 null
+	 * @return 条件树
+	 */
+	public static Clause compile(List<Restriction> restrictions) {
+		List<Comparison> orders = new ArrayList<Comparison>(0);
+		Predicate where = restrictions == null ? null : compileWhere(restrictions, orders);
+		return new Clause(where, orders);
+	}
+
+	/**
+	 * 按 sql 的优先级编译：or 把条件分成多段，每段内用 and 连接．
+	 */
+	private static Predicate compileWhere(List<Restriction> restrictions, List<Comparison> orders) {
+		List<Predicate> terms = null;
+		List<Predicate> run = new ArrayList<Predicate>(restrictions.size());
+		for (Restriction restriction : restrictions) {
+			if (restriction == null || !restriction.isMatched()) {
+				continue;
+			}
+			Predicate node = compile(restriction, orders);
+			if (node == null) {
+				continue;
+			}
+			if (!run.isEmpty() && restriction.isOr()) {
+				if (terms == null) {
+					terms = new ArrayList<Predicate>();
+				}
+				terms.add(and(run));
+				run = new ArrayList<Predicate>();
+			}
+			run.add(node);
+		}
+		if (run.isEmpty()) {
+			return terms == null ? null : terms.size() == 1 ? terms.get(0) : new Junction(true, terms);
+		}
+		if (terms == null) {
+			return and(run);
+		}
+		terms.add(and(run));
+		return new Junction(true, terms);
+	}
+
+	private static Predicate and(List<Predicate> run) {
+		return run.size() == 1 ? run.get(0) : new Junction(false, run);
+	}
+
+	/**
+	 * @return 条件节点，不生效的条件和 order by 返回 null
+	 */
+	private static Predicate compile(Restriction restriction, List<Comparison> orders) {
+		Operator operator = restriction.getOperator();
+		List<Object> values;
+		switch (operator.getArity()) {
+			case ONE:
+				if (restriction.getValue() == null) {
+					return null;
+				}
+				values = Collections.singletonList(restriction.getValue());
+				break;
+			case TWO:
+				if (restriction.getValues().size() < 1) {
+					return null;
+				}
+				if (restriction.getValues().size() != 2) {
+					throw new IllegalArgumentException("between must have two values.");
+				}
+				values = restriction.getValues();
+				break;
+			case MANY:
+				if (restriction.getValues().size() < 1) {
+					return null;
+				}
+				values = restriction.getValues();
+				break;
+			case ORDER:
+				orders.add(new Comparison(operator, restriction.getFieldName(), Collections.emptyList()));
+				return null;
+			case GROUP:
+				return compileWhere(restriction.getChildren(), orders);
+			default:
+				values = Collections.emptyList();
+		}
+		return new Comparison(operator, restriction.getFieldName(), values);
+	}
+}
@@ -0,0 +1,171 @@
+package com.aswishes.spring;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.aswishes.spring.Predicate.Clause;
+import com.aswishes.spring.Predicate.Comparison;
+import com.aswishes.spring.Predicate.Junction;
+
+/**
+ * 遍历一次 {@link Predicate} 条件树，同时生成 sql 和收集绑定参数．
+ * sql 和 {@link Restriction#restrictionSql(List)} 原有的格式一致；
+ * or 分组嵌套在 and 中时加括号，其他情况按 sql 优先级不需要括号．
+ * 不需要 sql 时（例如 sql 已经缓存）可以只收集参数．
+ * @author lizhou
+ */
+public class PredicateRenderer implements Predicate.Visitor {
+	/** 为 null 时只收集参数 */
+	private final StringBuilder sql;
+	/** 为 null 时只生成 sql */
+	private final List<Object> args;
+	/** 不为 null 时记录条件树的形状 */
+	private final List<Object> shape;
+	private final boolean inListPadding;
+
+	/**
+	 * @param sql 写入 sql 的缓冲区，为 null 时不生成 sql
+	 * @param args 写入绑定参数的列表，为 null 时不收集参数
+	 * @param inListPadding in, not in 的参数个数是否补齐到 2 的幂
+	 */
+	public PredicateRenderer(StringBuilder sql, List<Object> args, boolean inListPadding) {
+		this(sql, args, null, inListPadding);
+	}
+
+	private PredicateRenderer(StringBuilder sql, List<Object> args, List<Object> shape, boolean inListPadding) {
+		this.sql = sql;
+		this.args = args;
+		this.shape = shape;
+		this.inListPadding = inListPadding;
+	}
+
+	/**
+	 * @param clause 条件树
+	 * @return sql 片段，没有条件时为空字符串
+	 */
+	public static String toSql(Clause clause, boolean inListPadding) {
+		StringBuilder sb = new StringBuilder(64);
+		clause.accept(new PredicateRenderer(sb, null, inListPadding));
+		return sb.toString();
+	}
+
+	/**
+	 * @param clause 条件树
+	 * @return 按 sql 中 ? 的顺序排列的绑定参数
+	 */
+	public static List<Object> toArgs(Clause clause, boolean inListPadding) {
+		List<Object> list = new ArrayList<Object>();
+		clause.accept(new PredicateRenderer(null, list, inListPadding));
+		return list;
+	}
+
+	/**
+	 * 遍历一次条件树，收集绑定参数，同时得到条件树的形状：比较类型、列名、参数个数和 and, or 的分组．
+	 * 形状相同的条件树生成相同的 sql，可以作为缓存的键，命中缓存时不需要再遍历条件．
+	 * @param clause 条件树
+	 * @param args 写入绑定参数的列表，为 null 时不收集参数
+	 * @param inListPadding in, not in 的参数个数是否补齐到 2 的幂
+	 * @return 形状
+	 */
+	public static Object[] shapeOf(Clause clause, List<Object> args, boolean inListPadding) {
+		List<Object> shape = new ArrayList<Object>();
+		clause.accept(new PredicateRenderer(null, args, shape, inListPadding));
+		return shape.toArray();
+	}
+
+	@Override
+	public void visitClause(Clause clause) {
+		if (clause.getWhere() != null) {
+			clause.getWhere().accept(this);
+		}
+		if (sql != null) {
+			appendOrders(sql, clause.getOrders());
+		}
+		if (shape != null) {
+			shape.add("order by");
+			for (Comparison order : clause.getOrders()) {
+				shape.add(order.getOperator());
+				shape.add(order.getColumn());
+			}
+		}
+	}
+
+	/**
+	 * @param sb 缓冲区
+	 * @param orders 排序条件
+	 * @return sb，有排序条件时追加 "order by a asc , b desc "
+	 */
+	public static StringBuilder appendOrders(StringBuilder sb, List<Comparison> orders) {
+		for (int i = 0; i < orders.size(); i++) {
+			Comparison order = orders.get(i);
+			sb.append(i == 0 ? "order by " : ", ").append(order.getColumn()).append(' ')
+				.append(order.getOperator().getSymbol()).append(' ');
+		}
+		return sb;
+	}
+
+	@Override
+	public void visitJunction(Junction junction) {
+		List<Predicate> children = junction.getChildren();
+		if (shape != null) {
+			shape.add(junction.isOr() ? "or" : "and");
+			shape.add(children.size());
+		}
+		for (int i = 0; i < children.size(); i++) {
+			Predicate child = children.get(i);
+			if (i > 0 && sql != null) {
+				sql.append(junction.isOr() ? "or " : "and ");
+			}
+			boolean nested = !junction.isOr() && child instanceof Junction && ((Junction) child).isOr();
+			if (nested && sql != null) {
+				sql.append('(');
+			}
+			child.accept(this);
+			if (nested && sql != null) {
+				sql.setLength(sql.length() - 1);
+				sql.append(") ");
+			}
+		}
+	}
+
+	@Override
+	public void visitComparison(Comparison comparison) {
+		Operator operator = comparison.getOperator();
+		List<Object> values = comparison.getValues();
+		boolean padding = inListPadding && operator.getArity() == Operator.Arity.MANY;
+		int size = padding ? Restriction.inListBucket(values.size()) : values.size();
+		if (args != null) {
+			args.addAll(values);
+			Object last = values.isEmpty() ? null : values.get(values.size() - 1);
+			for (int i = values.size(); i < size; i++) {
+				args.add(last);
+			}
+		}
+		if (shape != null) {
+			shape.add(operator);
+			shape.add(comparison.getColumn());
+			shape.add(size);
+		}
+		if (sql == null) {
+			return;
+		}
+		sql.append(comparison.getColumn()).append(' ').append(operator.getSymbol());
+		switch (operator.getArity()) {
+			case ONE:
+				sql.append(" ? ");
+				break;
+			case TWO:
+				sql.append(" ? and ? ");
+				break;
+			case MANY:
+				sql.append('(');
+				for (int i = 0; i < size; i++) {
+					sql.append(i == 0 ? "?" : ",?");
+				}
+				sql.append(") ");
+				break;
+			default:
+				sql.append(' ');
+		}
+	}
+}
@@ -0,0 +1,411 @@
+package com.aswishes.spring;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 预编译的条件查询．与 {@link SqlAppender} 的条件拼接方式相同，但查询只声明一次，
+ * 每种生效子句的组合在第一次使用时生成 sql 并缓存，之后每次执行只把参数放入预先确定大小的数组或 Map．
+ * <pre>
+ * static final QueryTemplate QUERY = QueryTemplate.create("select * from m_user where 1 = 1")
+ *         .appendIfNotNull("and age &gt; ?")
+ *         .appendLikeIfNotBlank("and user_name like ?")
+ *         .appendIn("and id in")
+ *         .append("order by id");
+ *
+ * QueryTemplate.Query query = QUERY.bind(age, name, ids);
+ * jdbcTemplate.queryForList(query.getSql(), query.getArgs());
+ * </pre>
+ * 声明了 key 的子句使用命名参数（:key），参数放入 {@link Query#getParamMap()}；否则使用 ? 参数，放入 {@link Query#getArgs()}．
+ * 第一次调用 {@link #bind(Object...)} 后不能再添加子句．最多 64 个带参数的子句．
+ * @author lizhou
+ */
+public class QueryTemplate {
+	/** 每个模板最多缓存的 sql 数，超过后不再缓存新的组合 */
+	private static final int MAX_CACHED = 1024;
+
+	private final List<Clause> clauses = new ArrayList<Clause>();
+	private final ConcurrentMap<Shape, String> cache = new ConcurrentHashMap<Shape, String>();
+	private int parameterCount = 0;
+	private boolean hasIn = false;
+	private boolean inListPadding = Restriction.isInListPadding();
+	private volatile boolean compiled = false;
+
+	private QueryTemplate() {
+	}
+
+	/**
+	 * @param sqlPhrase 固定的开头，如 "select * from m_user where 1 = 1"
+	 * @return QueryTemplate
+	 */
+	public static QueryTemplate create(String sqlPhrase) {
+		return new QueryTemplate().append(sqlPhrase);
+	}
+
+	/**
+	 * @param inListPadding true: in 的参数个数补齐到 2 的幂，重复最后一个值
+	 * @return this
+	 */
+	public QueryTemplate setInListPadding(boolean inListPadding) {
+		checkNotCompiled();
+		this.inListPadding = inListPadding;
+		return this;
+	}
+
+	/**
+	 * 总是生效、没有参数的子句．
+	 */
+	public QueryTemplate append(String sqlPhrase) {
+		return add(new Clause(sqlPhrase, null, Condition.ALWAYS, Wrap.NONE, false));
+	}
+
+	//-----------------------------------------------------------------------------------------------
+	// placeholders
+	//-----------------------------------------------------------------------------------------------
+	public QueryTemplate appendIfNotNull(String sqlPhrase) {
+		return add(new Clause(sqlPhrase, null, Condition.NOT_NULL, Wrap.NONE, false));
+	}
+
+	public QueryTemplate appendIfNotEmpty(String sqlPhrase) {
+		return add(new Clause(sqlPhrase, null, Condition.NOT_EMPTY, Wrap.NONE, false));
+	}
+
+	public QueryTemplate appendIfNotBlank(String sqlPhrase) {
+		return add(new Clause(sqlPhrase, null, Condition.NOT_BLANK, Wrap.NONE, false));
+	}
+
+	/**
+	 * owner_id like '%value%'
+	 */
+	public QueryTemplate appendLikeIfNotBlank(String sqlPhrase) {
+		return add(new Clause(sqlPhrase, null, Condition.NOT_BLANK, Wrap.LIKE, false));
+	}
+
+	/**
+	 * owner_id like '%value'
+	 */
+	public QueryTemplate appendLikeLeftIfNotBlank(String sqlPhrase) {
+		return add(new Clause(sqlPhrase, null, Condition.NOT_BLANK, Wrap.LIKE_LEFT, false));
+	}
+
+	/**
+	 * owner_id like 'value%'
+	 */
+	public QueryTemplate appendLikeRightIfNotBlank(String sqlPhrase) {
+		return add(new Clause(sqlPhrase, null, Condition.NOT_BLANK, Wrap.LIKE_RIGHT, false));
+	}
+
+	/**
+	 * @param sqlPhrase 如 "and owner_id in"，占位符按值的个数生成，结果如 "and owner_id in (?,?,?)"
+	 */
+	public QueryTemplate appendIn(String sqlPhrase) {
+		return add(new Clause(sqlPhrase, null, Condition.NOT_EMPTY_LIST, Wrap.NONE, true));
+	}
+
+	//-----------------------------------------------------------------------------------------------
+	// named(keys)
+	//-----------------------------------------------------------------------------------------------
+	public QueryTemplate appendIfNotNull(String sqlPhrase, String key) {
+		return add(new Clause(sqlPhrase, key, Condition.NOT_NULL, Wrap.NONE, false));
+	}
+
+	public QueryTemplate appendIfNotEmpty(String sqlPhrase, String key) {
+		return add(new Clause(sqlPhrase, key, Condition.NOT_EMPTY, Wrap.NONE, false));
+	}
+
+	public QueryTemplate appendIfNotBlank(String sqlPhrase, String key) {
+		return add(new Clause(sqlPhrase, key, Condition.NOT_BLANK, Wrap.NONE, false));
+	}
+
+	public QueryTemplate appendLikeIfNotBlank(String sqlPhrase, String key) {
+		return add(new Clause(sqlPhrase, key, Condition.NOT_BLANK, Wrap.LIKE, false));
+	}
+
+	public QueryTemplate appendLikeLeftIfNotBlank(String sqlPhrase, String key) {
+		return add(new Clause(sqlPhrase, key, Condition.NOT_BLANK, Wrap.LIKE_LEFT, false));
+	}
+
+	public QueryTemplate appendLikeRightIfNotBlank(String sqlPhrase, String key) {
+		return add(new Clause(sqlPhrase, key, Condition.NOT_BLANK, Wrap.LIKE_RIGHT, false));
+	}
+
+	/**
+	 * @param sqlPhrase 如 "and owner_id in (:ids)"，值为 List，由 NamedParameterJdbcTemplate 展开
+	 */
+	public QueryTemplate appendIn(String sqlPhrase, String key) {
+		return add(new Clause(sqlPhrase, key, Condition.NOT_EMPTY_LIST, Wrap.NONE, true));
+	}
+
+	private QueryTemplate add(Clause clause) {
+		checkNotCompiled();
+		if (clause.condition != Condition.ALWAYS) {
+			if (parameterCount == Long.SIZE) {
+				throw new IllegalStateException("Query template supports at most " + Long.SIZE + " parameter clauses.");
+			}
+			clause.slot = parameterCount++;
+			hasIn |= clause.in && clause.key == null;
+		}
+		clauses.add(clause);
+		return this;
+	}
+
+	private void checkNotCompiled() {
+		if (compiled) {
+			throw new IllegalStateException("Query template can not be changed after first bind.");
+		}
+	}
+
+	/**
+	 * @param values 每个带参数的子句对应一个值，按声明顺序．值不满足子句的条件（为 null、空白、空集合等）时该子句不生效．
+	 * 		in 的值可以是 Collection 或数组
+	 * @return sql 和参数
+	 */
+	public Query bind(Object... values) {
+		if (!compiled) {
+			compiled = true;
+		}
+		if (values.length != parameterCount) {
+			throw new IllegalArgumentException("Expected " + parameterCount + " values but got " + values.length + ".");
+		}
+		long mask = 0;
+		int argCount = 0;
+		int namedCount = 0;
+		int[] inSizes = hasIn ? new int[parameterCount] : null;
+		List<?>[] lists = null;
+		for (Clause clause : clauses) {
+			if (clause.condition == Condition.ALWAYS) {
+				continue;
+			}
+			Object value = values[clause.slot];
+			if (clause.in) {
+				List<?> list = toList(value);
+				if (list.isEmpty()) {
+					continue;
+				}
+				if (inListPadding) {
+					list = Restriction.padInList(list);
+				}
+				if (lists == null) {
+					lists = new List<?>[parameterCount];
+				}
+				lists[clause.slot] = list;
+				if (clause.key == null) {
+					inSizes[clause.slot] = list.size();
+					argCount += list.size();
+				} else {
+					namedCount++;
+				}
+			} else if (clause.condition.test(value)) {
+				if (clause.key == null) {
+					argCount++;
+				} else {
+					namedCount++;
+				}
+			} else {
+				continue;
+			}
+			mask |= 1L << clause.slot;
+		}
+
+		Object[] args = new Object[argCount];
+		Map<String, Object> paramMap = namedCount == 0 ? Collections.<String, Object>emptyMap()
+				: new HashMap<String, Object>(namedCount * 4 / 3 + 1);
+		int n = 0;
+		for (Clause clause : clauses) {
+			if (clause.condition == Condition.ALWAYS || (mask & (1L << clause.slot)) == 0) {
+				continue;
+			}
+			if (clause.in) {
+				List<?> list = lists[clause.slot];
+				if (clause.key != null) {
+					paramMap.put(clause.key, list);
+				} else {
+					for (Object v : list) {
+						args[n++] = v;
+					}
+				}
+				continue;
+			}
+			Object value = clause.wrap.apply(values[clause.slot]);
+			if (clause.key != null) {
+				paramMap.put(clause.key, value);
+			} else {
+				args[n++] = value;
+			}
+		}
+		return new Query(getSql(new Shape(mask, inSizes)), args, paramMap);
+	}
+
+	private String getSql(Shape shape) {
+		String sql = cache.get(shape);
+		if (sql == null) {
+			sql = render(shape);
+			if (cache.size() < MAX_CACHED) {
+				cache.putIfAbsent(shape, sql);
+			}
+		}
+		return sql;
+	}
+
+	private String render(Shape shape) {
+		StringBuilder sb = SqlBuffer.acquire();
+		for (Clause clause : clauses) {
+			if (clause.condition != Condition.ALWAYS && (shape.mask & (1L << clause.slot)) == 0) {
+				continue;
+			}
+			sb.append(clause.sqlPhrase);
+			if (clause.in && clause.key == null) {
+				sb.append(" (");
+				Restriction.repeat(sb, "?", ",", shape.inSizes[clause.slot]).append(")");
+			}
+			sb.append(" ");
+		}
+		return SqlBuffer.release(sb);
+	}
+
+	/**
+	 * @return 已缓存的 sql 数
+	 */
+	public int getCachedCount() {
+		return cache.size();
+	}
+
+	private static List<?> toList(Object value) {
+		if (value == null) {
+			return Collections.emptyList();
+		}
+		if (value instanceof List) {
+			return (List<?>) value;
+		}
+		if (value instanceof Collection) {
+			return new ArrayList<Object>((Collection<?>) value);
+		}
+		if (value instanceof Object[]) {
+			return Arrays.asList((Object[]) value);
+		}
+		throw new IllegalArgumentException("In value must be a collection or an array: " + value.getClass().getName());
+	}
+
+	/**
+	 * 绑定后的查询．
+	 */
+	public static class Query {
+		private final String sql;
+		private final Object[] args;
+		private final Map<String, Object> paramMap;
+
+		private Query(String sql, Object[] args, Map<String, Object> paramMap) {
+			this.sql = sql;
+			this.args = args;
+			this.paramMap = paramMap;
+		}
+
+		public String getSql() {
+			return sql;
+		}
+
+		/**
+		 * @return ? 参数，按 sql 中的顺序
+		 */
+		public Object[] getArgs() {
+			return args;
+		}
+
+		/**
+		 * @return 命名参数
+		 */
+		public Map<String, Object> getParamMap() {
+			return paramMap;
+		}
+	}
+
+	private static class Clause {
+		final String sqlPhrase;
+		final String key;
+		final Condition condition;
+		final Wrap wrap;
+		final boolean in;
+		int slot = -1;
+
+		Clause(String sqlPhrase, String key, Condition condition, Wrap wrap, boolean in) {
+			this.sqlPhrase = sqlPhrase;
+			this.key = key;
+			this.condition = condition;
+			this.wrap = wrap;
+			this.in = in;
+		}
+	}
+
+	private enum Condition {
+		ALWAYS, NOT_NULL, NOT_EMPTY, NOT_BLANK, NOT_EMPTY_LIST;
+
+		boolean test(Object value) {
+			switch (this) {
+				case NOT_NULL:
+					return StringUtils.isNotNull(value);
+				case NOT_EMPTY:
+					return StringUtils.isNotEmpty(value);
+				case NOT_BLANK:
+					return StringUtils.isNotBlank(value);
+				default:
+					return true;
+			}
+		}
+	}
+
+	private enum Wrap {
+		NONE, LIKE, LIKE_LEFT, LIKE_RIGHT;
+
+		Object apply(Object value) {
+			switch (this) {
+				case LIKE:
+					return "%" + value + "%";
+				case LIKE_LEFT:
+					return "%" + value;
+				case LIKE_RIGHT:
+					return value + "%";
+				default:
+					return value;
+			}
+		}
+	}
+
+	/**
+	 * 生效子句的位图和 ? 参数的 in 子句的值个数．
+	 */
+	private static final class Shape {
+		final long mask;
+		final int[] inSizes;
+		final int hash;
+
+		Shape(long mask, int[] inSizes) {
+			this.mask = mask;
+			this.inSizes = inSizes;
+			this.hash = 31 * Long.hashCode(mask) + Arrays.hashCode(inSizes);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Shape)) {
+				return false;
+			}
+			Shape other = (Shape) obj;
+			return mask == other.mask && Arrays.equals(inSizes, other.inSizes);
+		}
+	}
+}
@@ -2,7 +2,9 @@ package com.aswishes.spring;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -43,6 +45,13 @@ public class Restriction {
 	public static final String ORDER_ASC = "asc";
 	/** 降序 */
 	public static final String ORDER_DESC = "desc";
+	/** 括号中的一组条件 */
+	public static final String GROUP = "group";
+
+	/** 全局开关：in, not in 的参数个数补齐到 2 的幂，重复最后一个值．减少不同 sql 语句的数量，提高预编译语句的复用 */
+	private static volatile boolean inListPadding = false;
+	/** 补齐后的最大参数个数．Oracle 的 in 最多 1000 个值，超过时不补齐 */
+	public static final int MAX_IN_LIST_PADDING = 1000;
 
 	private String fieldName;
 	/** 属性值 */
@@ -51,6 +60,10 @@ public class Restriction {
 	private List<Object> values = new ArrayList<Object>();
 	/** 比较类型 */
 	private String type;
+	/** 由 type 解析的比较类型，无法识别的类型按等于处理 */
+	private Operator operator = Operator.EQ;
+	/** group 的子条件 */
+	private List<Restriction> children;
 	/** 连接符 */
 	private String boundSymbol = "and";
 	/** 是否匹配，辅助进行业务逻辑处理 */
@@ -62,6 +75,10 @@ public class Restriction {
 	public Restriction(String type, String fieldName) {
 		this.type = type.toLowerCase();
 		this.fieldName = fieldName;
+		Operator op = Operator.of(this.type);
+		if (op != null) {
+			this.operator = op;
+		}
 	}
 
 	public Restriction(boolean matched, String type, String fieldName) {
@@ -268,63 +285,153 @@ public class Restriction {
 		r.type = restriction.type;
 		r.value = restriction.value;
 		r.values = restriction.values;
+		r.operator = restriction.operator;
+		r.children = restriction.children;
+		r.matched = restriction.matched;
+		return r;
+	}
+
+	/**
+	 * 括号中的一组条件，组内按各条件的连接符连接．配合 {@link #or(Restriction)} 可以写出 a = ? and (b = ? or c = ?)．
+	 * @param restrictions 子条件
+	 * @return 条件组
+	 */
+	public static Restriction group(Restriction... restrictions) {
+		Restriction r = new Restriction(GROUP, null);
+		r.children = Arrays.asList(restrictions);
 		return r;
 	}
 
 	public String toSqlString() {
-		if (EQ.equalsIgnoreCase(type) || NOT_EQ.equalsIgnoreCase(type) || LT.equalsIgnoreCase(type)
-				|| GT.equalsIgnoreCase(type) || LE.equalsIgnoreCase(type) || GE.equalsIgnoreCase(type)
-				|| LIKE.equalsIgnoreCase(type) || NOT_LIKE.equalsIgnoreCase(type)) {
-			return buildString();
-		}
-		if (IS_NULL.equalsIgnoreCase(type) || IS_NOT_NULL.equalsIgnoreCase(type)) {
-			return buildStringOfNull();
+		if (operator.getArity() == Operator.Arity.ORDER) {
+			return "order by " + fieldName + " " + type + " ";
 		}
-		if (BETWEEN.equalsIgnoreCase(type)) {
-			return buildStringOfBetween();
-		}
-		if (IN.equalsIgnoreCase(type) || NOT_IN.equalsIgnoreCase(type)) {
-			return buildStringOfIn();
+		StringBuilder sb = new StringBuilder(getBoundSymbol(boundSymbol));
+		if (operator.getArity() == Operator.Arity.GROUP) {
+			String sql = restrictionSql(children);
+			return sb.append("(").append(sql.trim()).append(") ").toString();
 		}
-		if (ORDER_ASC.equalsIgnoreCase(type) || ORDER_DESC.equalsIgnoreCase(type)) {
-			return buildStringOfOrder();
+		if (operator.getArity() == Operator.Arity.TWO && values.size() != 2) {
+			throw new IllegalArgumentException("between must have two values.");
 		}
-		return getBoundSymbol(boundSymbol) + fieldName + " = ? ";
+		List<Object> list = operator.getArity() == Operator.Arity.ONE ? Collections.singletonList(value) : values;
+		new PredicateRenderer(sb, null, inListPadding).visitComparison(new Predicate.Comparison(operator, fieldName, list));
+		return sb.toString();
 	}
 
 	/** 获取连接符(and, or)。如果是第一个块，不需要使用and,or */
 	private String getBoundSymbol(String boundSymbol) {
 		return (boundSymbol == null || boundSymbol.length() < 1) ? "" : (boundSymbol + " ");
 	}
-	private String buildString() {
-		return new StringBuilder(getBoundSymbol(boundSymbol))
-			.append(fieldName).append(" ").append(type).append(" ? ")
-			.toString();
+
+	public static void setInListPadding(boolean padding) {
+		inListPadding = padding;
 	}
-	private String buildStringOfOrder() {
-		StringBuilder sb = new StringBuilder("order by ");
-		sb.append(fieldName).append(" ").append(type).append(" ");
-		return sb.toString();
+
+	public static boolean isInListPadding() {
+		return inListPadding;
 	}
-	private String buildStringOfNull() {
-		return new StringBuilder(getBoundSymbol(boundSymbol))
-			.append(fieldName).append(" ").append(type).append(" ")
-			.toString();
+
+	/**
+	 * @param size in 的值个数
+	 * @return 补齐后的个数，即不小于 size 的 2 的幂；超过 {@link #MAX_IN_LIST_PADDING} 时不补齐，返回 size
+	 */
+	public static int inListBucket(int size) {
+		int bucket = size <= 1 ? size : Integer.highestOneBit(size - 1) << 1;
+		return bucket > MAX_IN_LIST_PADDING ? size : bucket;
 	}
-	private String buildStringOfBetween() {
-		if (values.size() != 2) {
-			throw new IllegalArgumentException("between must have two values.");
+
+	/**
+	 * 开启补齐时按块拆分 in 的值，每块补齐后仍不超过 chunkSize．
+	 * @param chunkSize 每块的最大参数个数
+	 * @return 每块的最大值个数：补齐后不超过 chunkSize 时为 chunkSize，否则为不大于 chunkSize 的 2 的幂
+	 */
+	public static int inListChunkSize(int chunkSize) {
+		return chunkSize < 1 || inListBucket(chunkSize) <= chunkSize ? chunkSize : Integer.highestOneBit(chunkSize);
+	}
+
+	/**
+	 * @param values in 的值
+	 * @return 补齐到 {@link #inListBucket(int)} 个的值，重复最后一个值．不需要补齐时返回原列表
+	 */
+	public static List<Object> padInList(List<? extends Object> values) {
+		int bucket = inListBucket(values.size());
+		List<Object> result = new ArrayList<Object>(bucket);
+		result.addAll(values);
+		Object last = values.isEmpty() ? null : values.get(values.size() - 1);
+		while (result.size() < bucket) {
+			result.add(last);
 		}
-		return new StringBuilder(getBoundSymbol(boundSymbol))
-			.append(fieldName).append(" ").append(type).append(" ? and ? ")
-			.toString();
+		return result;
 	}
-	private String buildStringOfIn() {
-		StringBuilder sb = new StringBuilder(getBoundSymbol(boundSymbol));
-		sb.append(fieldName).append(" ").append(type).append("(");
-		sb.append(repeat("?", ",", values.size()));
-		sb.append(") ");
-		return sb.toString();
+
+	/**
+	 * 不修改全局开关，只对给定的条件补齐 in, not in 的值．
+	 * @param restrictions 条件
+	 * @return 新的条件数组，in, not in 条件被替换为补齐后的副本，其他条件不变
+	 */
+	public static Restriction[] padIn(Restriction... restrictions) {
+		if (restrictions == null) {
+			return null;
+		}
+		Restriction[] result = new Restriction[restrictions.length];
+		for (int i = 0; i < restrictions.length; i++) {
+			Restriction r = restrictions[i];
+			if (r != null && r.operator.getArity() == Operator.Arity.MANY && r.values.size() != inListBucket(r.values.size())) {
+				Restriction padded = new Restriction(r.matched, r.type, r.fieldName, padInList(r.values));
+				padded.boundSymbol = r.boundSymbol;
+				r = padded;
+			} else if (r != null && r.children != null) {
+				Restriction padded = group(padIn(r.children.toArray(new Restriction[r.children.size()])));
+				padded.boundSymbol = r.boundSymbol;
+				padded.matched = r.matched;
+				r = padded;
+			}
+			result[i] = r;
+		}
+		return result;
+	}
+
+	/**
+	 * 把值个数超过 chunkSize 的 in 条件拆分成多组条件，每组中该 in 条件最多 chunkSize 个值，其他条件不变．
+	 * 值在拆分前去重，各组查询结果互不重叠，可以直接合并或求和．
+	 * 有 or 连接的条件时拆分会改变语义，不拆分；有多个超长的 in 条件时只拆分值最多的一个．
+	 * @param chunkSize 每组 in 条件的最大值个数
+	 * @param restrictions 条件
+	 * @return 拆分后的多组条件，不需要或不能拆分时返回 null
+	 */
+	public static List<Restriction[]> splitIn(int chunkSize, Restriction... restrictions) {
+		if (chunkSize < 1 || restrictions == null) {
+			return null;
+		}
+		int index = -1;
+		for (int i = 0; i < restrictions.length; i++) {
+			Restriction r = restrictions[i];
+			if (r == null || !r.matched) {
+				continue;
+			}
+			if (r.isOr()) {
+				return null;
+			}
+			if (r.operator == Operator.IN && r.values.size() > chunkSize
+					&& (index < 0 || r.values.size() > restrictions[index].values.size())) {
+				index = i;
+			}
+		}
+		if (index < 0) {
+			return null;
+		}
+		Restriction in = restrictions[index];
+		List<Object> values = new ArrayList<Object>(new LinkedHashSet<Object>(in.values));
+		List<Restriction[]> result = new ArrayList<Restriction[]>((values.size() + chunkSize - 1) / chunkSize);
+		for (int from = 0; from < values.size(); from += chunkSize) {
+			Restriction chunk = new Restriction(IN, in.fieldName, values.subList(from, Math.min(from + chunkSize, values.size())));
+			chunk.boundSymbol = in.boundSymbol;
+			Restriction[] group = restrictions.clone();
+			group[index] = chunk;
+			result.add(group);
+		}
+		return result;
 	}
 
 	public static String restrictionSql(Restriction... restrictions) {
@@ -332,49 +439,73 @@ public class Restriction {
 	}
 
 	public static String restrictionSql(List<Restriction> restrictions) {
-		StringBuilder sb = new StringBuilder("");
 		if (restrictions == null || restrictions.size() < 1) {
-			return sb.toString();
+			return "";
+		}
+		return PredicateRenderer.toSql(Predicate.compile(restrictions), inListPadding);
+	}
+
+	/**
+	 * 遍历一次条件，sql 直接写入 sb，绑定参数写入 args．
+	 * @param sb 写入 sql 的缓冲区，为 null 时不生成 sql
+	 * @param args 写入绑定参数的列表，为 null 时不收集参数
+	 * @param restrictions 条件
+	 * @return 条件树，可以用于判断是否需要 where
+	 */
+	public static Predicate.Clause render(StringBuilder sb, List<Object> args, Restriction... restrictions) {
+		Predicate.Clause clause = compile(restrictions);
+		clause.accept(new PredicateRenderer(sb, args, inListPadding));
+		return clause;
+	}
+
+	/**
+	 * 编译成条件树，过滤规则与 {@link #restrictionSql(List)} 一致．
+	 * 同时需要 sql 和参数时用 {@link PredicateRenderer} 遍历一次条件树，不需要分别调用 whereSql 和 whereValueList．
+	 * @param restrictions 条件
+	 * @return 条件树
+	 */
+	public static Predicate.Clause compile(Restriction... restrictions) {
+		return Predicate.compile(restrictions == null ? null : Arrays.asList(restrictions));
+	}
+
+	/**
+	 * 条件的形状：参与生成 sql 的条件的连接符、类型、字段名和 in 的值个数．形状相同的条件生成相同的 sql 语句．
+	 * 过滤规则与 {@link #restrictionSql(List)} 一致，第一个条件的连接符不参与比较．
+	 * @param restrictions 条件
+	 * @return 形状，可以作为缓存的键
+	 */
+	public static Object[] shapeOf(Restriction... restrictions) {
+		if (restrictions == null || restrictions.length < 1) {
+			return new Object[0];
 		}
-		List<Restriction> orderRestrictions = new ArrayList<Restriction>();
+		Object[] parts = new Object[restrictions.length * 4];
 		int num = 0;
-		for (int i = 0; i < restrictions.size(); i++) {
-			Restriction restriction = restrictions.get(i);
+		int n = 0;
+		for (Restriction restriction : restrictions) {
 			if (restriction == null || !restriction.matched) {
 				continue;
 			}
-			String type = restriction.getType();
-			if (Restriction.IN.equals(type) || Restriction.NOT_IN.equals(type) || Restriction.BETWEEN.equals(type)) { // 多值
-				if (restriction.getValues().size() < 1) { // 除去空值，这部分将不构成sql语句
+			Object size = null;
+			Operator.Arity arity = restriction.operator.getArity();
+			if (arity == Operator.Arity.MANY || arity == Operator.Arity.TWO) {
+				if (restriction.getValues().size() < 1) {
 					continue;
 				}
-			} else if (Restriction.IS_NULL.equals(type) || Restriction.IS_NOT_NULL.equals(type)) { // 无值
-				// 不存在空值，但是是sql语句的一部分
-			} else if (Restriction.ORDER_ASC.equals(type) || Restriction.ORDER_DESC.equals(type)) { // 无值
-				// 考虑到多个order by选项的情况，order by 语句单独处理
-				orderRestrictions.add(restriction);
-				continue;
-			} else { // 一个值
-				if (restriction.getValue() == null) { // 除去空值，这部分将不构成sql语句
-					continue;
+				size = restriction.getValues().size();
+				if (inListPadding && arity == Operator.Arity.MANY) {
+					size = inListBucket(restriction.getValues().size());
 				}
+			} else if (arity == Operator.Arity.GROUP) {
+				size = Arrays.asList(shapeOf(restriction.children.toArray(new Restriction[restriction.children.size()])));
+			} else if (arity == Operator.Arity.ONE && restriction.getValue() == null) {
+				continue;
 			}
-			if (num == 0) {
-				restriction.boundSymbol = "";
-			}
-			sb.append(restriction.toSqlString());
-			num++;
-		}
-		for (int i = 0; i < orderRestrictions.size(); i++) {
-			Restriction restriction = orderRestrictions.get(i);
-			if (i == 0) {
-				sb.append("order by ");
-				sb.append(restriction.fieldName).append(" ").append(restriction.type).append(" ");
-			} else {
-				sb.append(", ").append(restriction.fieldName).append(" ").append(restriction.type).append(" ");
-			}
+			parts[n++] = arity == Operator.Arity.ORDER || num++ == 0 ? null : restriction.boundSymbol;
+			parts[n++] = restriction.type;
+			parts[n++] = restriction.fieldName;
+			parts[n++] = size;
 		}
-		return sb.toString();
+		return n == parts.length ? parts : Arrays.copyOf(parts, n);
 	}
 
 	public static String whereSql(Restriction...restrictions) {
@@ -397,33 +528,10 @@ public class Restriction {
 	}
 
 	public static List<Object> whereValueList(Restriction...restrictions) {
-		List<Object> list = new ArrayList<Object>();
 		if (restrictions == null || restrictions.length < 1) {
-			return list;
-		}
-		for (Restriction restriction : restrictions) {
-			if (restriction == null || !restriction.matched) {
-				continue;
-			}
-			String type = restriction.getType();
-			if (Restriction.IN.equals(type) || Restriction.NOT_IN.equals(type) || Restriction.BETWEEN.equals(type)) { // 多值
-				if (restriction.getValues().size() < 1) {
-					continue;
-				}
-				list.addAll(restriction.getValues());
-
-			} else if (Restriction.IS_NULL.equals(type) || Restriction.IS_NOT_NULL.equals(type)
-					|| Restriction.ORDER_ASC.equals(type) || Restriction.ORDER_DESC.equals(type)) { // 无值
-				continue;
-
-			} else { // 一个值
-				if (restriction.getValue() == null) {
-					continue;
-				}
-				list.add(restriction.getValue());
-			}
+			return new ArrayList<Object>();
 		}
-		return list;
+		return PredicateRenderer.toArgs(compile(restrictions), inListPadding);
 	}
 
 	public static Map<String, Object> valueMap(Restriction...restrictions) {
@@ -435,38 +543,57 @@ public class Restriction {
 			if (restriction == null) {
 				continue;
 			}
-			String type = restriction.getType();
-
-			if (Restriction.IN.equals(type) || Restriction.NOT_IN.equals(type) || Restriction.BETWEEN.equals(type)) { // 多值
-				values.put(restriction.getFieldName(), restriction.getValues());
-
-			} else if (Restriction.IS_NULL.equals(type) || Restriction.IS_NOT_NULL.equals(type)
-					|| Restriction.ORDER_ASC.equals(type) || Restriction.ORDER_DESC.equals(type)) { // 无值
-				continue;
-
-			} else { // 一个值
-				values.put(restriction.getFieldName(), restriction.getValue());
+			switch (restriction.operator.getArity()) {
+				case TWO:
+				case MANY:
+					values.put(restriction.getFieldName(), restriction.getValues());
+					break;
+				case GROUP:
+					values.putAll(valueMap(restriction.children.toArray(new Restriction[restriction.children.size()])));
+					break;
+				case NONE:
+				case ORDER:
+					break;
+				default:
+					values.put(restriction.getFieldName(), restriction.getValue());
 			}
 		}
 		return values;
 	}
 
 	public static String repeat(String content, String separator, int num) {
-		StringBuilder sb = new StringBuilder();
+		return repeat(new StringBuilder(Math.max(num, 1) * (content.length() + separator.length())), content, separator, num).toString();
+	}
+
+	/**
+	 * 与 {@link #repeat(String, String, int)} 相同，直接写入 sb．
+	 * @return sb
+	 */
+	public static StringBuilder repeat(StringBuilder sb, String content, String separator, int num) {
 		for (int i = 0; i < num - 1; i++) {
 			sb.append(content).append(separator);
 		}
-		sb.append(content);
-		return sb.toString();
+		return sb.append(content);
 	}
 
 	public static String join(String[] values, String separator, String appendLast) {
-		StringBuilder sb = new StringBuilder();
-		for (int i = 0; i < values.length - 1; i++) {
-			sb.append(values[i]).append(separator);
+		return join(new StringBuilder(), Arrays.asList(values), separator, appendLast).toString();
+	}
+
+	/**
+	 * 与 {@link #join(List, String, String)} 相同，直接写入 sb．
+	 * @return sb
+	 */
+	public static StringBuilder join(StringBuilder sb, List<String> values, String separator, String appendLast) {
+		int last = values.size() - 1;
+		for (int i = 0; i < last; i++) {
+			sb.append(values.get(i)).append(separator);
 		}
-		sb.append(values[values.length - 1]).append(appendLast == null ? "" : appendLast);
-		return sb.toString();
+		sb.append(values.get(last));
+		if (appendLast != null) {
+			sb.append(appendLast);
+		}
+		return sb;
 	}
 
 	public static String join(String[] values, String separator) {
@@ -474,7 +601,7 @@ public class Restriction {
 	}
 
 	public static String join(List<String> values, String separator, String appendLast) {
-		return join(values.toArray(new String[values.size()]), separator, appendLast);
+		return join(new StringBuilder(), values, separator, appendLast).toString();
 	}
 
 	public static String join(List<String> values, String separator) {
@@ -493,6 +620,28 @@ public class Restriction {
 		return type;
 	}
 
+	public Operator getOperator() {
+		return operator;
+	}
+
+	public boolean isMatched() {
+		return matched;
+	}
+
+	/**
+	 * @return 是否用 or 与前一个条件连接
+	 */
+	public boolean isOr() {
+		return "or".equalsIgnoreCase(boundSymbol);
+	}
+
+	/**
+	 * @return group 的子条件，其他条件为 null
+	 */
+	public List<Restriction> getChildren() {
+		return children;
+	}
+
 	public String getFieldName() {
 		return fieldName;
 	}
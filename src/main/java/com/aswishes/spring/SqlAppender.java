@@ -13,19 +13,36 @@ import com.aswishes.spring.exception.RDbException;
 
 public class SqlAppender {
 	private static final Logger logger = LoggerFactory.getLogger(SqlAppender.class);
-	private StringBuilder sql = new StringBuilder(512);
+	private final StringBuilder sql;
 	private Map<String, Object> paramMap = new HashMap<String, Object>();
 	private List<Object> paramList = new ArrayList<Object>();
 	private boolean appendWhiteSpace = false;
+	/** in 的参数个数补齐到 2 的幂，默认使用 {@link Restriction#isInListPadding()} */
+	private boolean inListPadding = Restriction.isInListPadding();
 	
-	private SqlAppender(boolean appendWhiteSpace) {
+	private SqlAppender(StringBuilder sql, boolean appendWhiteSpace) {
+		this.sql = sql;
 		this.appendWhiteSpace = appendWhiteSpace;
 	}
+
+	private SqlAppender(boolean appendWhiteSpace) {
+		this(new StringBuilder(512), appendWhiteSpace);
+	}
 	
 	public static SqlAppender create(boolean appendWhiteSpace) {
 		return new SqlAppender(appendWhiteSpace);
 	}
 
+	/**
+	 * sql 直接写入调用方提供的缓冲区，例如 {@link SqlBuffer#acquire()}．缓冲区中已有的内容保留．
+	 * @param buffer 缓冲区
+	 * @param appendWhiteSpace 每个片段后是否追加空格
+	 * @return SqlAppender
+	 */
+	public static SqlAppender create(StringBuilder buffer, boolean appendWhiteSpace) {
+		return new SqlAppender(buffer, appendWhiteSpace);
+	}
+
 	public static SqlAppender create(String sqlPhrase) {
 		return new SqlAppender(false).append(sqlPhrase);
 	}
@@ -46,6 +63,15 @@ public class SqlAppender {
 		return new SqlAppender(false).appendValues(condition, sqlPhrase, values);
 	}
 
+	/**
+	 * @param inListPadding true: appendIn 的参数个数补齐到 2 的幂，重复最后一个值
+	 * @return this
+	 */
+	public SqlAppender setInListPadding(boolean inListPadding) {
+		this.inListPadding = inListPadding;
+		return this;
+	}
+
 	public SqlAppender append(boolean condition, String sqlPhrase) {
 		if (!condition) {
 			return this;
@@ -114,14 +140,14 @@ public class SqlAppender {
 		if (!condition) {
 			return this;
 		}
-		StringBuilder sb = new StringBuilder();
-		for (int i = 0; i < list.size(); i++) {
-			sb.append(",?");
+		if (inListPadding) {
+			list = Restriction.padInList(list);
 		}
-		if (sb.length() > 1) {
-			sb.deleteCharAt(0);
+		sql.append(sqlPhrase).append(" (");
+		if (list.size() > 0) {
+			Restriction.repeat(sql, "?", ",", list.size());
 		}
-		sql.append(sqlPhrase).append(" (").append(sb.toString()).append(") ");
+		sql.append(") ");
 		appendWhiteSpace();
 		paramList.addAll(list);
 		return this;
@@ -339,7 +365,7 @@ public class SqlAppender {
 		}
 		sql.append(sqlPhrase);
 		appendWhiteSpace();
-		paramMap.put(key, list);
+		paramMap.put(key, inListPadding ? Restriction.padInList(list) : list);
 		return this;
 	}
 	
@@ -436,6 +462,24 @@ public class SqlAppender {
 		}
 	}
 
+	/**
+	 * 清空 sql 和参数，重复使用当前对象及其缓冲区．之前通过 {@link #getParamMap()}, {@link #getParamList()} 得到的集合也会被清空．
+	 * @return this
+	 */
+	public SqlAppender reset() {
+		sql.setLength(0);
+		paramList.clear();
+		paramMap.clear();
+		return this;
+	}
+
+	/**
+	 * @return 写入 sql 的缓冲区
+	 */
+	public StringBuilder getBuffer() {
+		return sql;
+	}
+
 	public String getSql() {
 		return getSql(false);
 	}
@@ -0,0 +1,59 @@
+package com.aswishes.spring;
+
+/**
+ * 线程内复用的 sql 缓冲区．生成 sql 的各个片段直接写入同一个 {@link StringBuilder}，只在最后生成一次字符串．
+ * <pre>
+ * StringBuilder sb = SqlBuffer.acquire();
+ * SqlHelper.select("m_user").where(restrictions).appendTo(sb);
+ * String sql = SqlBuffer.release(sb);
+ * </pre>
+ * 同一线程嵌套使用时，内层得到新的缓冲区．容量超过 {@link #MAX_RETAINED_CAPACITY} 的缓冲区不保留，避免长期占用内存．
+ * @author lizhou
+ */
+public final class SqlBuffer {
+	/** 线程保留的缓冲区的最大容量 */
+	public static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+	private static final ThreadLocal<SqlBuffer> LOCAL = new ThreadLocal<SqlBuffer>() {
+		@Override
+		protected SqlBuffer initialValue() {
+			return new SqlBuffer();
+		}
+	};
+
+	private StringBuilder buffer = new StringBuilder(256);
+	private boolean inUse = false;
+
+	private SqlBuffer() {
+	}
+
+	/**
+	 * @return 当前线程的空缓冲区，已被占用时返回新的缓冲区．用完后需要调用 {@link #release(StringBuilder)}
+	 */
+	public static StringBuilder acquire() {
+		SqlBuffer local = LOCAL.get();
+		if (local.inUse) {
+			return new StringBuilder(256);
+		}
+		local.inUse = true;
+		local.buffer.setLength(0);
+		return local.buffer;
+	}
+
+	/**
+	 * 归还缓冲区．归还后不能再使用 sb．
+	 * @param sb {@link #acquire()} 得到的缓冲区
+	 * @return 缓冲区中的内容
+	 */
+	public static String release(StringBuilder sb) {
+		String result = sb.toString();
+		SqlBuffer local = LOCAL.get();
+		if (local.buffer == sb) {
+			if (sb.capacity() > MAX_RETAINED_CAPACITY) {
+				local.buffer = new StringBuilder(256);
+			}
+			local.inUse = false;
+		}
+		return result;
+	}
+}
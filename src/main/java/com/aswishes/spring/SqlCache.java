@@ -0,0 +1,117 @@
+package com.aswishes.spring;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 按 语句类型 + 表名 + 条件形状 缓存生成的 sql 语句，形状相同的查询不再重复拼接 sql．
+ * 条件形状见 {@link Restriction#shapeOf(Restriction...)} 和 {@link PredicateRenderer#shapeOf(Predicate.Clause, java.util.List, boolean)}．
+ * 缓存条目达到上限后不再加入新的条目．
+ * @author lizhou
+ */
+public class SqlCache {
+	/** 所有 DAO 默认共享的缓存 */
+	private static final SqlCache DEFAULT = new SqlCache(4096);
+
+	private final ConcurrentMap<Key, String> cache = new ConcurrentHashMap<Key, String>();
+	private final int maxSize;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param maxSize 最多缓存的语句数
+	 */
+	public SqlCache(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public static SqlCache getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * @param kind 语句类型，如 select, count, delete
+	 * @param tableName 表名
+	 * @param restrictions 条件
+	 * @param renderer 缓存中不存在时生成 sql
+	 * @return sql 语句
+	 */
+	public String get(String kind, String tableName, Restriction[] restrictions, Supplier<String> renderer) {
+		return get(kind, tableName, Restriction.shapeOf(restrictions), renderer);
+	}
+
+	/**
+	 * @param kind 语句类型，如 select, count, delete
+	 * @param tableName 表名
+	 * @param shape 条件形状，同一种形状的来源需要一致
+	 * @param renderer 缓存中不存在时生成 sql
+	 * @return sql 语句
+	 */
+	public String get(String kind, String tableName, Object[] shape, Supplier<String> renderer) {
+		Key key = new Key(kind, tableName, shape);
+		String sql = cache.get(key);
+		if (sql != null) {
+			hits.incrementAndGet();
+			return sql;
+		}
+		misses.incrementAndGet();
+		sql = renderer.get();
+		if (cache.size() < maxSize) {
+			cache.putIfAbsent(key, sql);
+		}
+		return sql;
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	public void clear() {
+		cache.clear();
+		hits.set(0);
+		misses.set(0);
+	}
+
+	private static class Key {
+		final String kind;
+		final String tableName;
+		final Object[] shape;
+		final int hash;
+		Key(String kind, String tableName, Object[] shape) {
+			this.kind = kind;
+			this.tableName = tableName;
+			this.shape = shape;
+			int h = kind.hashCode();
+			h = 31 * h + (tableName == null ? 0 : tableName.hashCode());
+			this.hash = 31 * h + Arrays.hashCode(shape);
+		}
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return hash == other.hash && kind.equals(other.kind)
+					&& (tableName == null ? other.tableName == null : tableName.equals(other.tableName))
+					&& Arrays.equals(shape, other.shape);
+		}
+	}
+}
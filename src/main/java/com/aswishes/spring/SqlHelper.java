@@ -33,14 +33,34 @@ public class SqlHelper {
 		}
 		public String columns(List<String> columns) {
 			sql.append("(");
-			String names = Restriction.join(columns, ",");
-			String values = Restriction.repeat("?", ", ", columns.size());
-			sql.append(names);
+			Restriction.join(sql, columns, ",", null);
 			sql.append(") values (");
-			sql.append(values);
+			Restriction.repeat(sql, "?", ", ", columns.size());
 			sql.append(")");
 			return sql.toString();
 		}
+		/**
+		 * 一条语句插入多行：insert into t(a,b) values (?, ?),(?, ?)
+		 * @param columns 字段名称列表
+		 * @param rows 行数
+		 * @return 最终sql语句
+		 */
+		public String columns(List<String> columns, int rows) {
+			if (rows < 1) {
+				throw new IllegalStateException("Row count must be greater than 0.");
+			}
+			sql.append("(");
+			Restriction.join(sql, columns, ",", null);
+			sql.append(") values ");
+			for (int i = 0; i < rows; i++) {
+				if (i > 0) {
+					sql.append(",");
+				}
+				sql.append("(");
+				Restriction.repeat(sql, "?", ", ", columns.size()).append(")");
+			}
+			return sql.toString();
+		}
 		/**
 		 * 指定insert语句需要插入的字段名称列表
 		 * @param columns 字段名称列表．如：["name", "age", "birthday"]
@@ -73,7 +93,7 @@ public class SqlHelper {
 			if (columns == null || columns.size() < 1) {
 				return sql.toString();
 			}
-			sql.append("where ").append(Restriction.join(columns, " = ? and ", " = ?"));
+			Restriction.join(sql.append("where "), columns, " = ? and ", " = ?");
 			return sql.toString();
 		}
 		/**
@@ -103,6 +123,8 @@ public class SqlHelper {
 
 	public static class Select {
 		private StringBuilder sql = new StringBuilder();
+		/** 条件中的 order by，放在语句最后，count 语句不需要 */
+		private StringBuilder orderBy;
 		private String tableName;
 		private String countColumns = "*";
 		private String columns = "*";
@@ -155,14 +177,20 @@ public class SqlHelper {
 			if (restrictions == null || restrictions.length < 1) {
 				return this;
 			}
-			String str = Restriction.whereSql(restrictions);
-			if (str == null || str.trim().length() < 1) {
-				return this;
+			return where(Restriction.compile(restrictions));
+		}
+		/**
+		 * 使用已经编译的条件树，不再重复编译条件．
+		 * @param clause 条件树
+		 * @return Select对象
+		 */
+		public Select where(Predicate.Clause clause) {
+			if (clause.getWhere() != null) {
+				sql.append("where ");
+				clause.getWhere().accept(new PredicateRenderer(sql, null, Restriction.isInListPadding()));
 			}
-			if (str.startsWith("order by")) {
-				sql.append(str);
-			} else {
-				sql.append("where ").append(str);
+			if (!clause.getOrders().isEmpty()) {
+				orderBy = PredicateRenderer.appendOrders(orderBy == null ? new StringBuilder() : orderBy, clause.getOrders());
 			}
 			return this;
 		}
@@ -181,21 +209,39 @@ public class SqlHelper {
 			sql.append("having ").append(express).append(" ");
 			return this;
 		}
-		public String toCountString() {
-			StringBuilder r = new StringBuilder();
+		/**
+		 * 把 count 语句写入调用方提供的缓冲区．条件中的 order by 不出现在 count 语句中．
+		 * @param r 缓冲区，可以来自 {@link SqlBuffer#acquire()}
+		 * @return r
+		 */
+		public StringBuilder appendCountTo(StringBuilder r) {
 			r.append("select count(").append(countColumns).append(") from ").append(tableName).append(" ");
 			if (sql.length() > 0) {
 				r.append(sql).append(" ");
 			}
-			return r.toString();
+			return r;
 		}
-		public String toSqlString() {
-			StringBuilder r = new StringBuilder();
+		/**
+		 * 把 select 语句写入调用方提供的缓冲区．
+		 * @param r 缓冲区，可以来自 {@link SqlBuffer#acquire()}
+		 * @return r
+		 */
+		public StringBuilder appendTo(StringBuilder r) {
 			r.append("select ").append(columns).append(" from ").append(tableName).append(" ");
-			if (sql.length() > 0) {
-				r.append(sql).append(" ");
+			if (sql.length() > 0 || orderBy != null) {
+				r.append(sql);
+				if (orderBy != null) {
+					r.append(orderBy);
+				}
+				r.append(" ");
 			}
-			return r.toString();
+			return r;
+		}
+		public String toCountString() {
+			return SqlBuffer.release(appendCountTo(SqlBuffer.acquire()));
+		}
+		public String toSqlString() {
+			return SqlBuffer.release(appendTo(SqlBuffer.acquire()));
 		}
 		@Override
 		public String toString() {
@@ -222,7 +268,7 @@ public class SqlHelper {
 			if (columns == null || columns.size() < 1) {
 				throw new IllegalStateException("Column list can not be empty.");
 			}
-			sql.append(Restriction.join(columns, " = ?, ", " = ? "));
+			Restriction.join(sql, columns, " = ?, ", " = ? ");
 			return this;
 		}
 		/**
@@ -251,7 +297,7 @@ public class SqlHelper {
 			if (columns == null || columns.size() < 1) {
 				throw new IllegalStateException("Column list can not be empty.");
 			}
-			sql.append("where ").append(Restriction.join(columns, " = ? and ", " = ?"));
+			Restriction.join(sql.append("where "), columns, " = ? and ", " = ?");
 			return sql.toString();
 		}
 		/**
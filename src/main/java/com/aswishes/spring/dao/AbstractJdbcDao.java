@@ -1,38 +1,67 @@
 package com.aswishes.spring.dao;
 
-import java.lang.reflect.Field;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
 import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.ReflectionUtils;
-import org.springframework.util.ReflectionUtils.FieldCallback;
 
+import com.aswishes.spring.KeysetCursor;
+import com.aswishes.spring.KeysetPageResult;
+import com.aswishes.spring.Operator;
 import com.aswishes.spring.PageResult;
+import com.aswishes.spring.Predicate;
+import com.aswishes.spring.Predicate.Comparison;
+import com.aswishes.spring.PredicateRenderer;
 import com.aswishes.spring.Restriction;
+import com.aswishes.spring.SqlCache;
 import com.aswishes.spring.StringUtils;
 import com.aswishes.spring.SqlHelper;
 import com.aswishes.spring.SqlHelper.Columns;
-import com.aswishes.spring.SqlHelper.Delete;
-import com.aswishes.spring.SqlHelper.Insert;
 import com.aswishes.spring.SqlHelper.Update;
+import com.aswishes.spring.dialect.Dialect;
+import com.aswishes.spring.dialect.Dialects;
 import com.aswishes.spring.exception.RDbException;
+import com.aswishes.spring.id.IdGenerator;
+import com.aswishes.spring.mapper.EntityMeta;
+import com.aswishes.spring.mapper.GeneratedRowMapper;
 import com.aswishes.spring.mapper.Mapper;
 import com.aswishes.spring.mapper.MapperHelper.RsMapper;
+import com.aswishes.spring.mapper.TrackedEntity;
 
 @Transactional
 public abstract class AbstractJdbcDao {
@@ -40,6 +69,38 @@ public abstract class AbstractJdbcDao {
 	protected JdbcTemplate jdbcTemplate;
 	protected String tableName;
 	protected boolean showSql = false;
+	/** 流式查询每次从数据库读取的行数．MySQL 需要设置为 {@link #MYSQL_STREAMING_FETCH_SIZE} 才会逐行读取 */
+	protected int fetchSize = 1000;
+	/** 批量写入时每个 JDBC batch 包含的最大行数 */
+	protected int batchSize = 500;
+	/** in, not in 的参数个数补齐到 2 的幂，减少不同 sql 语句的数量．全局开关见 {@link Restriction#setInListPadding(boolean)} */
+	protected boolean inListPadding = false;
+	/** 按条件形状缓存查询语句，为 null 时每次重新生成 */
+	protected SqlCache sqlCache = SqlCache.getDefault();
+	/** 主键生成器，不为 null 时 save/saveAll 为单列主键为 null 的实体生成主键 */
+	protected IdGenerator idGenerator;
+	/** 数据库方言，未设置时根据数据源自动识别 */
+	protected Dialect dialect;
+	/** 批量删除时每条 in(...) 语句的最大参数个数，开启补齐时补齐后也不超过该值 */
+	protected int deleteChunkSize = 1000;
+	/** 批量保存的方式 */
+	protected InsertMode insertMode = InsertMode.BATCH;
+	/** {@link InsertMode#MULTI_VALUES} 时每条语句的最大参数个数 */
+	protected int maxInsertParameters = 2000;
+	/**
+	 * 查询条件中 in 的值个数超过该值时拆分成多条语句分别执行，合并列表结果，累加计数结果．小于 1 时不拆分．
+	 * 拆分只用于 getList, getCount, forEach, delete 的条件版本；分页查询、getObjectBy 和 stream 不拆分．
+	 * 每条语句各自排序，合并后的列表按块拼接，不保证整体顺序．有 or 条件时不拆分．
+	 */
+	protected int inListSplitSize = 0;
+	/** 不为 null 时拆分后的查询在该线程池中并行执行，这些查询不参与调用方的事务．forEach, delete 始终在当前线程依次执行 */
+	protected Executor inListExecutor;
+
+	/** 键集分页的排序项：列名或 表别名.列名 */
+	private static final Pattern KEYSET_COLUMN = Pattern.compile("([A-Za-z_][A-Za-z0-9_$]*\\.)?[A-Za-z_][A-Za-z0-9_$]*");
+
+	/** MySQL 驱动的流式读取模式，结果集不会一次性加载到内存 */
+	public static final int MYSQL_STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
 
 	public AbstractJdbcDao() {
 		setTableName();
@@ -52,6 +113,57 @@ public abstract class AbstractJdbcDao {
 
 	protected abstract void setTableName();
 
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public void setInListPadding(boolean inListPadding) {
+		this.inListPadding = inListPadding;
+	}
+
+	public void setSqlCache(SqlCache sqlCache) {
+		this.sqlCache = sqlCache;
+	}
+
+	public void setIdGenerator(IdGenerator idGenerator) {
+		this.idGenerator = idGenerator;
+	}
+
+	public void setDialect(Dialect dialect) {
+		this.dialect = dialect;
+	}
+
+	protected Dialect getDialect() {
+		if (dialect == null) {
+			dialect = Dialects.of(jdbcTemplate.getDataSource());
+		}
+		return dialect;
+	}
+
+	public void setDeleteChunkSize(int deleteChunkSize) {
+		this.deleteChunkSize = deleteChunkSize;
+	}
+
+	public void setInsertMode(InsertMode insertMode) {
+		this.insertMode = insertMode;
+	}
+
+	public void setMaxInsertParameters(int maxInsertParameters) {
+		this.maxInsertParameters = maxInsertParameters;
+	}
+
+	public void setInListSplitSize(int inListSplitSize) {
+		this.inListSplitSize = inListSplitSize;
+	}
+
+	public void setInListExecutor(Executor inListExecutor) {
+		this.inListExecutor = inListExecutor;
+	}
+
 	/**
 	 * @param <E> the class of the object
 	 * @param sql Select SQL, the result only contain one field
@@ -97,12 +209,14 @@ public abstract class AbstractJdbcDao {
 
 	@Transactional(noRollbackFor = {EmptyResultDataAccessException.class})
 	public <E> E getObjectBy(RowMapper<E> mapper, Restriction...restrictions) {
-		String sql = SqlHelper.select(getTableName(mapper, tableName)).columns("*").where(restrictions).toSqlString();
+		restrictions = prepare(restrictions);
+		List<Object> args = new ArrayList<Object>();
+		String sql = getSelectSql(getTableName(mapper, tableName), args, restrictions);
 		if (showSql) {
 			logger.debug("Select SQL: {}", sql);
 		}
 		try {
-			return jdbcTemplate.queryForObject(sql, mapper, Restriction.whereValueArray(restrictions));
+			return jdbcTemplate.queryForObject(sql, mapper, args.toArray());
 		} catch (EmptyResultDataAccessException e) {
 			return null;
 		}
@@ -138,67 +252,104 @@ public abstract class AbstractJdbcDao {
 
 	@Transactional
 	public int getCount(Restriction...restrictions) {
-		String sql = SqlHelper.select(tableName).count("*").where(restrictions).toCountString();
+		List<Restriction[]> chunks = splitIn(restrictions);
+		if (chunks != null) {
+			int count = 0;
+			for (Integer result : queryChunks(chunks, new Function<Restriction[], Integer>() {
+				@Override
+				public Integer apply(Restriction[] chunk) {
+					return getCount(chunk);
+				}
+			})) {
+				count += result;
+			}
+			return count;
+		}
+		restrictions = prepare(restrictions);
+		List<Object> args = new ArrayList<Object>();
+		String sql = getCountSql(tableName, args, restrictions);
 		if (showSql) {
 			logger.debug("Select SQL: {}", sql);
 		}
-		Integer result = jdbcTemplate.queryForObject(sql, Integer.class, Restriction.whereValueArray(restrictions));
+		Integer result = jdbcTemplate.queryForObject(sql, Integer.class, args.toArray());
 		return result == null ? 0 : result;
 	}
 
 	@Transactional
-	public <E> List<E> getList(RowMapper<E> mapper, Restriction...restrictions) {
-		String sql = SqlHelper.select(getTableName(mapper, tableName)).columns("*").where(restrictions).toSqlString();
+	public <E> List<E> getList(final RowMapper<E> mapper, Restriction...restrictions) {
+		List<Restriction[]> chunks = splitIn(restrictions);
+		if (chunks != null) {
+			return merge(queryChunks(chunks, new Function<Restriction[], List<E>>() {
+				@Override
+				public List<E> apply(Restriction[] chunk) {
+					return getList(mapper, chunk);
+				}
+			}));
+		}
+		restrictions = prepare(restrictions);
+		List<Object> args = new ArrayList<Object>();
+		String sql = getSelectSql(getTableName(mapper, tableName), args, restrictions);
 		if (showSql) {
 			logger.debug("Select SQL: {}", sql);
 		}
-		return jdbcTemplate.query(sql, mapper, Restriction.whereValueArray(restrictions));
+		return jdbcTemplate.query(sql, mapper, args.toArray());
 	}
 
 	@Transactional
 	public List<Map<String, Object>> getList(Restriction...restrictions) {
-		String sql = SqlHelper.select(tableName).columns("*").where(restrictions).toSqlString();
-		return jdbcTemplate.queryForList(sql, Restriction.whereValueArray(restrictions));
+		List<Restriction[]> chunks = splitIn(restrictions);
+		if (chunks != null) {
+			return merge(queryChunks(chunks, new Function<Restriction[], List<Map<String, Object>>>() {
+				@Override
+				public List<Map<String, Object>> apply(Restriction[] chunk) {
+					return getList(chunk);
+				}
+			}));
+		}
+		restrictions = prepare(restrictions);
+		List<Object> args = new ArrayList<Object>();
+		String sql = getSelectSql(tableName, args, restrictions);
+		return jdbcTemplate.queryForList(sql, args.toArray());
 	}
 
 	@Transactional
 	public <E> List<E> getList(RowMapper<E> mapper, int pageNo, int pageSize) {
-		String sql = SqlHelper.select(getTableName(mapper, tableName)).columns("*").where().toSqlString();
-		sql += getLimitSql(pageNo, pageSize);
+		String sql = getLimitSql(SqlHelper.select(getTableName(mapper, tableName)).columns("*").where().toSqlString());
 		if (showSql) {
 			logger.debug("Select SQL: {}", sql);
 		}
-		return jdbcTemplate.query(sql, mapper);
+		return jdbcTemplate.query(sql, mapper, getLimitArgs(pageNo, pageSize));
 	}
 
 	@Transactional
 	public List<Map<String, Object>> getList(int pageNo, int pageSize) {
-		String sql = SqlHelper.select(tableName).columns("*").where().toSqlString();
-		sql += getLimitSql(pageNo, pageSize);
+		String sql = getLimitSql(SqlHelper.select(tableName).columns("*").where().toSqlString());
 		if (showSql) {
 			logger.debug("Select SQL: {}", sql);
 		}
-		return jdbcTemplate.queryForList(sql);
+		return jdbcTemplate.queryForList(sql, getLimitArgs(pageNo, pageSize));
 	}
 
 	@Transactional
 	public <E> List<E> getList(RowMapper<E> mapper, int pageNo, int pageSize, Restriction...restrictions) {
-		String sql = SqlHelper.select(getTableName(mapper, tableName)).columns("*").where(restrictions).toSqlString();
-		sql += getLimitSql(pageNo, pageSize);
+		restrictions = prepare(restrictions);
+		List<Object> args = new ArrayList<Object>();
+		String sql = getLimitSql(getSelectSql(getTableName(mapper, tableName), args, restrictions));
 		if (showSql) {
 			logger.debug("Select SQL: {}", sql);
 		}
-		return jdbcTemplate.query(sql, mapper, Restriction.whereValueArray(restrictions));
+		return jdbcTemplate.query(sql, mapper, getLimitArgs(pageNo, pageSize, args.toArray()));
 	}
 
 	@Transactional
 	public List<Map<String, Object>> getList(int pageNo, int pageSize, Restriction...restrictions) {
-		String sql = SqlHelper.select(tableName).columns("*").where(restrictions).toSqlString();
-		sql += getLimitSql(pageNo, pageSize);
+		restrictions = prepare(restrictions);
+		List<Object> args = new ArrayList<Object>();
+		String sql = getLimitSql(getSelectSql(tableName, args, restrictions));
 		if (showSql) {
 			logger.debug("Select SQL: {}", sql);
 		}
-		return jdbcTemplate.queryForList(sql, Restriction.whereValueArray(restrictions));
+		return jdbcTemplate.queryForList(sql, getLimitArgs(pageNo, pageSize, args.toArray()));
 	}
 
 	@Transactional
@@ -281,6 +432,109 @@ public abstract class AbstractJdbcDao {
 		return wrapper;
 	}
 
+	/**
+	 * 键集分页：按上一页最后一行的排序列的值定位，不使用 offset，深的页与第一页的代价相同．
+	 * 排序来自 restrictions 中的 order by，排序列的组合必须唯一（通常以主键结尾）且不为 null；
+	 * 排序项只能是列名或 表别名.列名，按列名从结果集读取，表达式、函数等排序项会被拒绝．不查询总记录数．
+	 * @param <E> the class of the object
+	 * @param mapper 行映射
+	 * @param cursor 上一页的 {@link KeysetPageResult#getNextCursor()}，第一页为 null
+	 * @param pageSize 每页数量
+	 * @param restrictions 查询条件，必须包含 order by
+	 * @return 分页结果，{@link KeysetPageResult#getNextCursor()} 为 null 时没有下一页
+	 */
+	@Transactional
+	public <E> KeysetPageResult<E> getKeysetPage(final RowMapper<E> mapper, String cursor, int pageSize, final Restriction...restrictions) {
+		KeysetPageResult<E> wrapper = new KeysetPageResult<E>(pageSize) {
+			@Override
+			protected List<E> queryAfter(String cursor, int pageSize) throws Exception {
+				return keysetQuery(this, getTableName(mapper, tableName), mapper, cursor, pageSize, restrictions);
+			}
+		};
+		try {
+			wrapper.paging(cursor);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RDbException(e);
+		}
+		return wrapper;
+	}
+
+	/**
+	 * @see #getKeysetPage(RowMapper, String, int, Restriction...)
+	 */
+	@Transactional
+	public KeysetPageResult<Map<String, Object>> getKeysetPage(String cursor, int pageSize, final Restriction...restrictions) {
+		return getKeysetPage(new ColumnMapRowMapper(), cursor, pageSize, restrictions);
+	}
+
+	private <E> List<E> keysetQuery(KeysetPageResult<E> page, String table, final RowMapper<E> mapper, String cursor, final int pageSize, Restriction...restrictions) {
+		final List<Comparison> orders = Restriction.compile(restrictions).getOrders();
+		if (orders.isEmpty()) {
+			throw new IllegalArgumentException("Keyset paging requires order by restrictions.");
+		}
+		final String[] keyColumns = new String[orders.size()];
+		for (int i = 0; i < keyColumns.length; i++) {
+			String column = orders.get(i).getColumn().trim();
+			if (!KEYSET_COLUMN.matcher(column).matches()) {
+				throw new IllegalArgumentException("Keyset paging only supports plain column order by, not: " + column);
+			}
+			keyColumns[i] = column.substring(column.lastIndexOf('.') + 1);
+		}
+		Restriction[] query = restrictions;
+		if (cursor != null) {
+			query = new Restriction[] { Restriction.group(restrictions), seek(orders, KeysetCursor.decode(cursor, orders)) };
+		}
+		query = prepare(query);
+		List<Object> args = new ArrayList<Object>();
+		String sql = getLimitSql(getSelectSql(table, args, query));
+		if (showSql) {
+			logger.debug("Select SQL: {}", sql);
+		}
+		final Object[][] lastKeys = new Object[1][];
+		RowMapper<E> recorder = new RowMapper<E>() {
+			@Override
+			public E mapRow(ResultSet rs, int rowNum) throws SQLException {
+				if (rowNum == pageSize - 1) {
+					Object[] keys = new Object[keyColumns.length];
+					for (int i = 0; i < keys.length; i++) {
+						// 与 getObject 不同，驱动特有的日期类型(如 oracle.sql.TIMESTAMP)会转换为标准类型
+						keys[i] = JdbcUtils.getResultSetValue(rs, rs.findColumn(keyColumns[i]));
+					}
+					lastKeys[0] = keys;
+				}
+				return mapper.mapRow(rs, rowNum);
+			}
+		};
+		// 多读一行判断是否有下一页
+		List<E> list = jdbcTemplate.query(sql, recorder, getLimitArgs(1, pageSize + 1, args.toArray()));
+		if (list.size() > pageSize) {
+			list.remove(pageSize);
+			page.setNextCursor(KeysetCursor.encode(orders, lastKeys[0]));
+		}
+		return list;
+	}
+
+	/**
+	 * (c1 &gt; v1) or (c1 = v1 and c2 &gt; v2) or ...，降序的列使用 &lt;
+	 */
+	private static Restriction seek(List<Comparison> orders, Object[] keys) {
+		Restriction[] terms = new Restriction[orders.size()];
+		for (int i = 0; i < orders.size(); i++) {
+			Restriction[] parts = new Restriction[i + 1];
+			for (int j = 0; j < i; j++) {
+				parts[j] = Restriction.eq(orders.get(j).getColumn(), keys[j]);
+			}
+			Comparison order = orders.get(i);
+			parts[i] = order.getOperator() == Operator.ORDER_DESC
+					? Restriction.lt(order.getColumn(), keys[i]) : Restriction.gt(order.getColumn(), keys[i]);
+			Restriction term = Restriction.group(parts);
+			terms[i] = i == 0 ? term : Restriction.or(term);
+		}
+		return Restriction.group(terms);
+	}
+
 	@Transactional
 	public int getCount(String sql, Restriction...restrictions) {
 		if (restrictions == null || restrictions.length < 1) {
@@ -307,26 +561,26 @@ public abstract class AbstractJdbcDao {
 
 	@Transactional
 	public <E> List<E> getList(String sql, RowMapper<E> bean, int pageNo, int pageSize, Restriction...restrictions) {
-		sql += getLimitSql(pageNo, pageSize);
+		sql = getLimitSql(sql);
 		if (showSql) {
 			logger.debug("Select SQL: {}", sql);
 		}
 		if (restrictions == null || restrictions.length < 1) {
-			return jdbcTemplate.query(sql, bean);
+			return jdbcTemplate.query(sql, bean, getLimitArgs(pageNo, pageSize));
 		}
-		return jdbcTemplate.query(sql, bean, Restriction.whereValueArray(restrictions));
+		return jdbcTemplate.query(sql, bean, getLimitArgs(pageNo, pageSize, Restriction.whereValueArray(restrictions)));
 	}
 
 	@Transactional
 	public List<Map<String, Object>> getList(String sql, int pageNo, int pageSize, Restriction...restrictions) {
-		sql += getLimitSql(pageNo, pageSize);
+		sql = getLimitSql(sql);
 		if (showSql) {
 			logger.debug("Select SQL: {}", sql);
 		}
 		if (restrictions == null || restrictions.length < 1) {
-			return jdbcTemplate.queryForList(sql);
+			return jdbcTemplate.queryForList(sql, getLimitArgs(pageNo, pageSize));
 		}
-		return jdbcTemplate.queryForList(sql, Restriction.whereValueArray(restrictions));
+		return jdbcTemplate.queryForList(sql, getLimitArgs(pageNo, pageSize, Restriction.whereValueArray(restrictions)));
 	}
 
 	@Transactional
@@ -387,20 +641,20 @@ public abstract class AbstractJdbcDao {
 
 	@Transactional
 	public <E> List<E> getList(String sql, RowMapper<E> bean, int pageNo, int pageSize, Object...args) {
-		sql += getLimitSql(pageNo, pageSize);
+		sql = getLimitSql(sql);
 		if (showSql) {
 			logger.debug("Select SQL: {}", sql);
 		}
-		return jdbcTemplate.query(sql, bean, args);
+		return jdbcTemplate.query(sql, bean, getLimitArgs(pageNo, pageSize, args));
 	}
 
 	@Transactional
 	public List<Map<String, Object>> getList(String sql, int pageNo, int pageSize, Object...args) {
-		sql += getLimitSql(pageNo, pageSize);
+		sql = getLimitSql(sql);
 		if (showSql) {
 			logger.debug("Select SQL: {}", sql);
 		}
-		return jdbcTemplate.queryForList(sql, args);
+		return jdbcTemplate.queryForList(sql, getLimitArgs(pageNo, pageSize, args));
 	}
 
 	@Transactional
@@ -443,8 +697,287 @@ public abstract class AbstractJdbcDao {
 		return wrapper;
 	}
 
-	protected String getLimitSql(int pageNo, int pageSize) {
-		return " limit " + getStartIndex(pageNo, pageSize) + "," + pageSize;
+	/**
+	 * 逐行读取查询结果并交给回调处理，结果不会保存在内存中．
+	 * @param <E> the class of the object
+	 * @param mapper 行映射
+	 * @param action 每一行的处理回调
+	 * @param restrictions 查询条件
+	 */
+	@Transactional
+	public <E> void forEach(final RowMapper<E> mapper, final Consumer<? super E> action, Restriction...restrictions) {
+		List<Restriction[]> chunks = splitIn(restrictions);
+		if (chunks != null) {
+			for (Restriction[] chunk : chunks) {
+				forEach(mapper, action, chunk);
+			}
+			return;
+		}
+		restrictions = prepare(restrictions);
+		List<Object> args = new ArrayList<Object>();
+		String sql = getSelectSql(getTableName(mapper, tableName), args, restrictions);
+		forEach(sql, mapper, action, args.toArray());
+	}
+
+	/**
+	 * 逐行读取查询结果并交给回调处理，结果不会保存在内存中．使用只进游标和 {@link #fetchSize}．
+	 * 没有事务时单独占用一个连接，读取期间关闭自动提交，否则 PostgreSQL 等驱动会忽略 fetchSize．
+	 * @param <E> the class of the object
+	 * @param sql 查询语句
+	 * @param mapper 行映射
+	 * @param action 每一行的处理回调
+	 * @param args 查询参数
+	 */
+	@Transactional
+	public <E> void forEach(final String sql, final RowMapper<E> mapper, final Consumer<? super E> action, final Object...args) {
+		if (showSql) {
+			logger.debug("Select SQL: {}", sql);
+		}
+		ResultSetSpliterator<E> spliterator = new ResultSetSpliterator<E>(jdbcTemplate, sql, mapper, fetchSize, args);
+		try {
+			while (spliterator.tryAdvance(action)) {
+			}
+		} finally {
+			spliterator.close();
+		}
+	}
+
+	/**
+	 * @see #stream(String, RowMapper, Object...)
+	 */
+	@Transactional(propagation = Propagation.SUPPORTS)
+	public <E> Stream<E> stream(RowMapper<E> mapper, Restriction...restrictions) {
+		restrictions = prepare(restrictions);
+		List<Object> args = new ArrayList<Object>();
+		String sql = getSelectSql(getTableName(mapper, tableName), args, restrictions);
+		return stream(sql, mapper, args.toArray());
+	}
+
+	/**
+	 * 以流的方式读取查询结果，每次只映射一行．流持有数据库连接，使用完毕后必须关闭，如：
+	 * <pre>
+	 * try (Stream&lt;User&gt; users = dao.stream(sql, mapper)) {
+	 *     users.forEach(...);
+	 * }
+	 * </pre>
+	 * 在事务中调用时使用事务的连接，流必须在事务结束前读取完毕；没有事务时流单独占用一个连接．
+	 * @param <E> the class of the object
+	 * @param sql 查询语句
+	 * @param mapper 行映射
+	 * @param args 查询参数
+	 * @return 查询结果流
+	 */
+	@Transactional(propagation = Propagation.SUPPORTS)
+	public <E> Stream<E> stream(String sql, RowMapper<E> mapper, Object...args) {
+		if (showSql) {
+			logger.debug("Select SQL: {}", sql);
+		}
+		final ResultSetSpliterator<E> spliterator = new ResultSetSpliterator<E>(jdbcTemplate, sql, mapper, fetchSize, args);
+		return StreamSupport.stream(spliterator, false).onClose(new Runnable() {
+			@Override
+			public void run() {
+				spliterator.close();
+			}
+		});
+	}
+
+	/**
+	 * 执行查询前处理条件：开启 {@link #inListPadding} 时补齐 in, not in 的值．
+	 * 只作用于由 DAO 生成 sql 的方法，调用方传入 sql 的方法需要使用全局开关 {@link Restriction#setInListPadding(boolean)}．
+	 * @param restrictions 条件
+	 * @return 处理后的条件
+	 */
+	protected Restriction[] prepare(Restriction...restrictions) {
+		if (inListPadding) {
+			return Restriction.padIn(restrictions);
+		}
+		return restrictions;
+	}
+
+	/**
+	 * @param restrictions 条件
+	 * @return 按 {@link #inListSplitSize} 拆分后的多组条件，不需要拆分时返回 null
+	 */
+	protected List<Restriction[]> splitIn(Restriction...restrictions) {
+		List<Restriction[]> chunks = Restriction.splitIn(inListChunkSize(inListSplitSize), restrictions);
+		if (chunks != null && showSql) {
+			logger.debug("Split in list into {} queries", chunks.size());
+		}
+		return chunks;
+	}
+
+	/**
+	 * @param chunkSize in 每块的最大参数个数
+	 * @return 开启补齐时每块的最大值个数，保证补齐后的参数个数不超过 chunkSize
+	 */
+	private int inListChunkSize(int chunkSize) {
+		return inListPadding || Restriction.isInListPadding() ? Restriction.inListChunkSize(chunkSize) : chunkSize;
+	}
+
+	/**
+	 * 依次或在 {@link #inListExecutor} 中并行执行拆分后的查询．
+	 * @return 每组条件的查询结果，与 chunks 顺序一致
+	 */
+	private <R> List<R> queryChunks(List<Restriction[]> chunks, final Function<Restriction[], R> query) {
+		List<R> results = new ArrayList<R>(chunks.size());
+		Executor executor = inListExecutor;
+		if (executor == null) {
+			for (Restriction[] chunk : chunks) {
+				results.add(query.apply(chunk));
+			}
+			return results;
+		}
+		List<CompletableFuture<R>> futures = new ArrayList<CompletableFuture<R>>(chunks.size());
+		for (final Restriction[] chunk : chunks) {
+			futures.add(CompletableFuture.supplyAsync(new Supplier<R>() {
+				@Override
+				public R get() {
+					return query.apply(chunk);
+				}
+			}, executor));
+		}
+		try {
+			for (CompletableFuture<R> future : futures) {
+				results.add(future.join());
+			}
+		} catch (CompletionException e) {
+			for (CompletableFuture<R> future : futures) {
+				future.cancel(false);
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RDbException("Split in query failed", e.getCause());
+		}
+		return results;
+	}
+
+	private static <E> List<E> merge(List<List<E>> lists) {
+		int size = 0;
+		for (List<E> list : lists) {
+			size += list.size();
+		}
+		List<E> result = new ArrayList<E>(size);
+		for (List<E> list : lists) {
+			result.addAll(list);
+		}
+		return result;
+	}
+
+	/**
+	 * @param table 表名
+	 * @param restrictions 条件
+	 * @return select * from table where ...，设置了 {@link #sqlCache} 时按条件形状缓存
+	 */
+	protected String getSelectSql(String table, Restriction...restrictions) {
+		return getSelectSql(table, null, restrictions);
+	}
+
+	/**
+	 * 条件只编译一次，sql 和绑定参数取自同一个条件树．
+	 * @param table 表名
+	 * @param args 写入绑定参数的列表，为 null 时不收集参数
+	 * @param restrictions 条件
+	 * @return select * from table where ...，设置了 {@link #sqlCache} 时按条件形状缓存
+	 */
+	protected String getSelectSql(final String table, List<Object> args, Restriction...restrictions) {
+		final Predicate.Clause clause = Restriction.compile(restrictions);
+		return getSql("select", table, clause, args, new Supplier<String>() {
+			@Override
+			public String get() {
+				return SqlHelper.select(table).columns("*").where(clause).toSqlString();
+			}
+		});
+	}
+
+	/**
+	 * @param table 表名
+	 * @param restrictions 条件
+	 * @return select count(*) from table where ...，设置了 {@link #sqlCache} 时按条件形状缓存
+	 */
+	protected String getCountSql(String table, Restriction...restrictions) {
+		return getCountSql(table, null, restrictions);
+	}
+
+	/**
+	 * 条件只编译一次，sql 和绑定参数取自同一个条件树．
+	 * @param table 表名
+	 * @param args 写入绑定参数的列表，为 null 时不收集参数
+	 * @param restrictions 条件
+	 * @return select count(*) from table where ...，设置了 {@link #sqlCache} 时按条件形状缓存
+	 */
+	protected String getCountSql(final String table, List<Object> args, Restriction...restrictions) {
+		final Predicate.Clause clause = Restriction.compile(restrictions);
+		return getSql("count", table, clause, args, new Supplier<String>() {
+			@Override
+			public String get() {
+				return SqlHelper.select(table).count("*").where(clause).toCountString();
+			}
+		});
+	}
+
+	/**
+	 * @param table 表名
+	 * @param restrictions 条件
+	 * @return delete from table where ...，设置了 {@link #sqlCache} 时按条件形状缓存
+	 */
+	protected String getDeleteSql(String table, Restriction...restrictions) {
+		return getDeleteSql(table, null, restrictions);
+	}
+
+	/**
+	 * 条件只编译一次，sql 和绑定参数取自同一个条件树．
+	 * @param table 表名
+	 * @param args 写入绑定参数的列表，为 null 时不收集参数
+	 * @param restrictions 条件
+	 * @return delete from table where ...，设置了 {@link #sqlCache} 时按条件形状缓存
+	 */
+	protected String getDeleteSql(final String table, List<Object> args, Restriction...restrictions) {
+		final Predicate.Clause clause = Restriction.compile(restrictions);
+		return getSql("delete", table, clause, args, new Supplier<String>() {
+			@Override
+			public String get() {
+				return SqlHelper.delete(table).where(PredicateRenderer.toSql(clause, Restriction.isInListPadding()));
+			}
+		});
+	}
+
+	/**
+	 * 收集参数并生成 sql．设置了缓存时收集参数的同一次遍历得到条件形状，缓存中不存在时才生成 sql．
+	 */
+	private String getSql(String kind, String table, Predicate.Clause clause, List<Object> args, Supplier<String> renderer) {
+		if (sqlCache == null) {
+			if (args != null) {
+				args.addAll(PredicateRenderer.toArgs(clause, Restriction.isInListPadding()));
+			}
+			return renderer.get();
+		}
+		return sqlCache.get(kind, table, PredicateRenderer.shapeOf(clause, args, Restriction.isInListPadding()), renderer);
+	}
+
+	/**
+	 * @param sql 查询语句
+	 * @return 由 {@link #getDialect()} 生成的分页语句，offset 和 limit 是最后两个 ? 参数，见 {@link #getLimitArgs(int, int, Object...)}
+	 */
+	protected String getLimitSql(String sql) {
+		return getDialect().limit(sql, "?", "?");
+	}
+
+	/**
+	 * @param args 查询参数
+	 * @return 查询参数后按方言的顺序追加 offset 和 limit
+	 */
+	protected Object[] getLimitArgs(int pageNo, int pageSize, Object...args) {
+		int length = args == null ? 0 : args.length;
+		Object[] result = new Object[length + 2];
+		if (length > 0) {
+			System.arraycopy(args, 0, result, 0, length);
+		}
+		int offset = getStartIndex(pageNo, pageSize);
+		boolean offsetFirst = getDialect().isOffsetFirst();
+		result[length] = offsetFirst ? offset : pageSize;
+		result[length + 1] = offsetFirst ? pageSize : offset;
+		return result;
 	}
 
 	protected int getStartIndex(int pageNo, int pageSize) {
@@ -452,76 +985,299 @@ public abstract class AbstractJdbcDao {
 	}
 
 	public void delete(Restriction...restrictions) {
-		String sql = SqlHelper.delete(tableName).where(Restriction.whereSql(restrictions));
+		List<Restriction[]> chunks = splitIn(restrictions);
+		if (chunks != null) {
+			for (Restriction[] chunk : chunks) {
+				delete(chunk);
+			}
+			return;
+		}
+		restrictions = prepare(restrictions);
+		List<Object> args = new ArrayList<Object>();
+		String sql = getDeleteSql(tableName, args, restrictions);
 		if (showSql) {
 			logger.debug("Delete SQL: {}", sql);
 		}
-		jdbcTemplate.update(sql, Restriction.whereValueArray(restrictions));
+		jdbcTemplate.update(sql, args.toArray());
 	}
 
 	public <T> void save(T t) {
-		List<Object> values = new ArrayList<Object>();
-		List<String> columns = new ArrayList<String>();
-		ReflectionUtils.doWithFields(t.getClass(), new FieldCallback() {
-			@Override
-			public void doWith(Field field) throws IllegalArgumentException, IllegalAccessException {
-				if (!field.isAccessible() ) {
-					field.setAccessible(true);
-				}
-				Object value = ReflectionUtils.getField(field, t);
-				if (value == null) {
-					return;
-				}
-				Mapper mapper = field.getAnnotation(Mapper.class);
-				String name = field.getName();
-				if (mapper == null) {
-				} else if (mapper.ignore()) {
-					return;
-				} else if (StringUtils.isNotBlank(mapper.name())) {
-					name = mapper.name();
-				}
-				columns.add(name);
-				values.add(value);
-			}
-		});
-		String sql = Insert.table(getTableName(t, tableName)).columns(columns);
+		EntityMeta<T> meta = EntityMeta.forEntity(t);
+		Object[] values = meta.getValues(t);
+		String table = meta.getTableName(tableName);
+		generateId(meta, t, values, table);
+		BitSet columns = meta.nonNullColumns(values);
+		String sql = meta.getInsertSql(table, columns);
 		if (showSql) {
 			logger.debug("Insert SQL: {}", sql);
 		}
-		jdbcTemplate.update(sql, values.toArray());
+		jdbcTemplate.update(sql, EntityMeta.select(values, columns));
 	}
 
-	public <T> Long saveAndGetId(T t) {
-		List<Object> values = new ArrayList<Object>();
-		List<String> columns = new ArrayList<String>();
-		ReflectionUtils.doWithFields(t.getClass(), new FieldCallback() {
+	/**
+	 * 批量保存，忽略值为 null 的列．非 null 列相同的实体使用同一条 insert 语句，按 {@link #batchSize} 分批执行．
+	 * @param <T> Entity Object
+	 * @param entities Entity objects
+	 */
+	@Transactional
+	public <T> void saveAll(Collection<T> entities) {
+		saveAll(entities, false);
+	}
+
+	/**
+	 * 批量保存．按 {@link #insertMode} 使用 JDBC batch 或多行 insert 语句．
+	 * @param <T> Entity Object
+	 * @param entities Entity objects
+	 * @param allColumns true: 写入所有列(包括值为 null 的列，数据库默认值不会生效)，整批只使用一种 insert 语句;
+	 *                   false: 忽略值为 null 的列，按非 null 列分组
+	 */
+	@Transactional
+	public <T> void saveAll(Collection<T> entities, boolean allColumns) {
+		if (StringUtils.isEmpty(entities)) {
+			return;
+		}
+		Map<String, InsertGroup> groups = new LinkedHashMap<String, InsertGroup>();
+		for (T t : entities) {
+			EntityMeta<T> meta = EntityMeta.forEntity(t);
+			Object[] values = meta.getValues(t);
+			String table = meta.getTableName(tableName);
+			generateId(meta, t, values, table);
+			BitSet columns = allColumns ? meta.allColumns() : meta.nonNullColumns(values);
+			String sql = meta.getInsertSql(table, columns);
+			InsertGroup group = groups.get(sql);
+			if (group == null) {
+				group = new InsertGroup(meta, table, columns);
+				groups.put(sql, group);
+			}
+			group.batchArgs.add(EntityMeta.select(values, columns));
+		}
+		for (Map.Entry<String, InsertGroup> entry : groups.entrySet()) {
+			InsertGroup group = entry.getValue();
+			if (insertMode == InsertMode.MULTI_VALUES && group.batchArgs.size() > 1) {
+				multiValuesInsert(group);
+				continue;
+			}
+			if (showSql) {
+				logger.debug("Insert SQL: {}, rows: {}", entry.getKey(), group.batchArgs.size());
+			}
+			batchUpdate(entry.getKey(), group.batchArgs);
+		}
+	}
+
+	/**
+	 * 多行 insert：每条语句写入 {@link #maxInsertParameters} / 列数 行．
+	 * 行数相同的语句再按 {@link #batchSize} 组成 JDBC batch，最后不满的一组单独执行．
+	 */
+	private void multiValuesInsert(InsertGroup group) {
+		int columnCount = group.columns.cardinality();
+		int rows = Math.max(1, maxInsertParameters / Math.max(1, columnCount));
+		int total = group.batchArgs.size();
+		int full = total / rows * rows;
+		if (full > 0) {
+			String sql = group.meta.getInsertSql(group.table, group.columns, rows);
+			List<Object[]> batchArgs = new ArrayList<Object[]>(full / rows);
+			for (int from = 0; from < full; from += rows) {
+				batchArgs.add(flatten(group.batchArgs.subList(from, from + rows), columnCount));
+			}
+			if (showSql) {
+				logger.debug("Insert SQL: {}, statements: {}", sql, batchArgs.size());
+			}
+			batchUpdate(sql, batchArgs);
+		}
+		if (full < total) {
+			String sql = group.meta.getInsertSql(group.table, group.columns, total - full);
+			if (showSql) {
+				logger.debug("Insert SQL: {}", sql);
+			}
+			jdbcTemplate.update(sql, flatten(group.batchArgs.subList(full, total), columnCount));
+		}
+	}
+
+	private static Object[] flatten(List<Object[]> rows, int columnCount) {
+		Object[] args = new Object[rows.size() * columnCount];
+		int i = 0;
+		for (Object[] row : rows) {
+			System.arraycopy(row, 0, args, i, columnCount);
+			i += columnCount;
+		}
+		return args;
+	}
+
+	/**
+	 * 批量保存，并把数据库生成的主键写回实体的主键字段(由 Mapper#primaryKey 指定，只支持单列主键)．
+	 * 非 null 列相同的实体按 {@link #batchSize} 分批执行，每批通过一次 getGeneratedKeys 取回全部主键．
+	 * 主键已经有值的实体按原值插入，不读取生成的主键．设置了 {@link #idGenerator} 时主键在插入前生成，
+	 * 否则仅适用于 数据库主键自动增长 类型的表
+	 * @param <T> Entity Object
+	 * @param entities Entity objects
+	 * @return 与实体顺序一致的主键
+	 */
+	@Transactional
+	public <T> List<Long> saveAllAndGetId(Collection<T> entities) {
+		List<Long> ids = new ArrayList<Long>();
+		if (StringUtils.isEmpty(entities)) {
+			return ids;
+		}
+		Map<String, List<Object[]>> groups = new LinkedHashMap<String, List<Object[]>>();
+		Map<String, List<T>> groupEntities = new HashMap<String, List<T>>();
+		Map<String, Boolean> keyGiven = new HashMap<String, Boolean>();
+		Map<String, String> keyColumns = new HashMap<String, String>();
+		for (T t : entities) {
+			EntityMeta<T> meta = EntityMeta.forEntity(t);
+			Object[] values = meta.getValues(t);
+			String table = meta.getTableName(tableName);
+			generateId(meta, t, values, table);
+			BitSet columns = meta.nonNullColumns(values);
+			String sql = meta.getInsertSql(table, columns);
+			List<Object[]> batchArgs = groups.get(sql);
+			if (batchArgs == null) {
+				batchArgs = new ArrayList<Object[]>();
+				groups.put(sql, batchArgs);
+				groupEntities.put(sql, new ArrayList<T>());
+				keyGiven.put(sql, meta.getPrimaryKeyValue(values) != null);
+				keyColumns.put(sql, meta.getPrimaryKeyColumns()[0]);
+			}
+			batchArgs.add(EntityMeta.select(values, columns));
+			groupEntities.get(sql).add(t);
+		}
+		for (Map.Entry<String, List<Object[]>> entry : groups.entrySet()) {
+			String sql = entry.getKey();
+			List<T> list = groupEntities.get(sql);
+			if (showSql) {
+				logger.debug("Insert SQL: {}, rows: {}", sql, list.size());
+			}
+			if (keyGiven.get(sql)) {
+				batchUpdate(sql, entry.getValue());
+				continue;
+			}
+			List<Number> keys = batchUpdateAndGetKeys(sql, keyColumns.get(sql), entry.getValue());
+			if (keys.size() != list.size()) {
+				throw new RDbException("Generated key count[" + keys.size() + "] and row count[" + list.size() + "] is inequality.");
+			}
+			for (int i = 0; i < list.size(); i++) {
+				T t = list.get(i);
+				EntityMeta.forEntity(t).setGeneratedKey(t, keys.get(i));
+			}
+		}
+		for (T t : entities) {
+			Object id = EntityMeta.forEntity(t).getPrimaryKeyValues(t)[0];
+			ids.add(id == null ? null : ((Number) id).longValue());
+		}
+		return ids;
+	}
+
+	/**
+	 * 按 {@link #batchSize} 分批执行 JDBC batch，并读取每批生成的主键．
+	 * 只请求主键列，按列名读取；驱动返回的结果集只有一列且列名不同时(如 MySQL 的 GENERATED_KEY)读取该列．
+	 * @param sql insert 语句
+	 * @param keyColumn 主键列
+	 * @param batchArgs 每一行的参数
+	 * @return 生成的主键，顺序与参数一致
+	 */
+	protected List<Number> batchUpdateAndGetKeys(final String sql, final String keyColumn, final List<Object[]> batchArgs) {
+		return jdbcTemplate.execute(new PreparedStatementCreator() {
 			@Override
-			public void doWith(Field field) throws IllegalArgumentException, IllegalAccessException {
-				if (!field.isAccessible() ) {
-					field.setAccessible(true);
-				}
-				Object value = ReflectionUtils.getField(field, t);
-				if (value == null) {
-					return;
-				}
-				Mapper mapper = field.getAnnotation(Mapper.class);
-				String name = field.getName();
-				if (mapper == null) {
-					name = field.getName();
-				} else if (mapper.ignore()) {
-					return;
-				} else if (StringUtils.isNotBlank(mapper.name())) {
-					name = mapper.name();
+			public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
+				return con.prepareStatement(sql, new String[] { keyColumn });
+			}
+		}, new PreparedStatementCallback<List<Number>>() {
+			@Override
+			public List<Number> doInPreparedStatement(PreparedStatement ps) throws SQLException {
+				List<Number> keys = new ArrayList<Number>(batchArgs.size());
+				int size = batchSize > 0 ? batchSize : batchArgs.size();
+				for (int from = 0; from < batchArgs.size(); from += size) {
+					int to = Math.min(from + size, batchArgs.size());
+					for (Object[] args : batchArgs.subList(from, to)) {
+						for (int i = 0; i < args.length; i++) {
+							StatementCreatorUtils.setParameterValue(ps, i + 1, SqlTypeValue.TYPE_UNKNOWN, args[i]);
+						}
+						ps.addBatch();
+					}
+					ps.executeBatch();
+					ResultSet rs = ps.getGeneratedKeys();
+					try {
+						int index = findKeyColumn(rs, keyColumn);
+						while (rs.next()) {
+							Object key = rs.getObject(index);
+							if (!(key instanceof Number)) {
+								throw new RDbException("Generated key of column " + keyColumn + " is not a number: " + key);
+							}
+							keys.add((Number) key);
+						}
+					} finally {
+						JdbcUtils.closeResultSet(rs);
+					}
 				}
-				columns.add(name);
-				values.add(value);
+				return keys;
 			}
 		});
-		String sql = Insert.table(getTableName(t, tableName)).columns(columns);
+	}
+
+	private static int findKeyColumn(ResultSet rs, String keyColumn) throws SQLException {
+		ResultSetMetaData rsmd = rs.getMetaData();
+		int count = rsmd.getColumnCount();
+		for (int i = 1; i <= count; i++) {
+			if (keyColumn.equalsIgnoreCase(JdbcUtils.lookupColumnName(rsmd, i))) {
+				return i;
+			}
+		}
+		if (count == 1) {
+			return 1;
+		}
+		throw new RDbException("Generated key column " + keyColumn + " not found.");
+	}
+
+	/**
+	 * 按 {@link #batchSize} 分批执行 JDBC batch．
+	 * @param sql SQL 语句
+	 * @param batchArgs 每一行的参数
+	 * @return 每一行的影响行数，顺序与参数一致
+	 */
+	protected int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+		int[] result = new int[batchArgs.size()];
+		int size = batchSize > 0 ? batchSize : batchArgs.size();
+		for (int from = 0; from < batchArgs.size(); from += size) {
+			int to = Math.min(from + size, batchArgs.size());
+			int[] counts = jdbcTemplate.batchUpdate(sql, batchArgs.subList(from, to));
+			System.arraycopy(counts, 0, result, from, counts.length);
+		}
+		return result;
+	}
+
+	/**
+	 * 保存并返回主键．设置了 {@link #idGenerator} 时返回生成的主键，否则仅适用于 数据库主键自动增长 类型的表
+	 * @param <T> Entity Object
+	 * @param t Entity object
+	 * @return primary key
+	 */
+	public <T> Long saveAndGetId(T t) {
+		EntityMeta<T> meta = EntityMeta.forEntity(t);
+		Object[] values = meta.getValues(t);
+		String table = meta.getTableName(tableName);
+		Long id = generateId(meta, t, values, table);
+		BitSet columns = meta.nonNullColumns(values);
+		String sql = meta.getInsertSql(table, columns);
 		if (showSql) {
 			logger.debug("Insert SQL: {}", sql);
 		}
-		return saveAndGetId(sql, values.toArray());
+		if (id != null) {
+			jdbcTemplate.update(sql, EntityMeta.select(values, columns));
+			return id;
+		}
+		return saveAndGetId(sql, EntityMeta.select(values, columns));
+	}
+
+	/**
+	 * 单列主键为 null 时使用 {@link #idGenerator} 生成主键，写入实体和 values．
+	 * @return 生成的主键，没有生成时为 null
+	 */
+	private <T> Long generateId(EntityMeta<T> meta, T t, Object[] values, String table) {
+		if (idGenerator == null || !meta.isKeyAssignable() || meta.getPrimaryKeyValue(values) != null) {
+			return null;
+		}
+		long id = idGenerator.nextId(table);
+		meta.assignKey(t, values, id);
+		return id;
 	}
 
 	/**
@@ -538,7 +1294,7 @@ public abstract class AbstractJdbcDao {
 			public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
 				PreparedStatement ps = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
 				for (int i = 0; i < values.length; i++) {
-					ps.setObject(i + 1, values[i]);
+					StatementCreatorUtils.setParameterValue(ps, i + 1, SqlTypeValue.TYPE_UNKNOWN, values[i]);
 				}
                 return ps;
 			}
@@ -546,55 +1302,105 @@ public abstract class AbstractJdbcDao {
 		return holder.getKey().longValue();
 	}
 
+	/**
+	 * 插入或更新：主键不存在时 insert，存在时更新所有非主键列．语句由 {@link #getDialect()} 生成，
+	 * 如 MySQL 的 on duplicate key update 和 H2 的 merge．
+	 * @param <T> Entity Object
+	 * @param t Entity object, 主键由 Mapper#primaryKey 指定且不能为 null
+	 */
+	@Transactional
+	public <T> void upsert(T t) {
+		EntityMeta<T> meta = EntityMeta.forEntity(t);
+		String sql = meta.getUpsertSql(meta.getTableName(tableName), getDialect());
+		if (showSql) {
+			logger.debug("Upsert SQL: {}", sql);
+		}
+		jdbcTemplate.update(sql, meta.getValues(t));
+	}
+
+	/**
+	 * 批量插入或更新．同一张表的实体使用同一条语句，按 {@link #batchSize} 分批执行 JDBC batch．
+	 * @param <T> Entity Object
+	 * @param entities Entity objects
+	 * @return 每个实体的影响行数，顺序与实体一致．含义由数据库决定，如 MySQL 更新时返回 2
+	 * @see #upsert(Object)
+	 */
+	@Transactional
+	public <T> int[] upsertAll(Collection<T> entities) {
+		if (StringUtils.isEmpty(entities)) {
+			return new int[0];
+		}
+		Dialect dialect = getDialect();
+		Map<String, List<Object[]>> groups = new LinkedHashMap<String, List<Object[]>>();
+		Map<String, List<Integer>> positions = new HashMap<String, List<Integer>>();
+		int position = 0;
+		for (T t : entities) {
+			EntityMeta<T> meta = EntityMeta.forEntity(t);
+			String sql = meta.getUpsertSql(meta.getTableName(tableName), dialect);
+			List<Object[]> batchArgs = groups.get(sql);
+			if (batchArgs == null) {
+				batchArgs = new ArrayList<Object[]>();
+				groups.put(sql, batchArgs);
+				positions.put(sql, new ArrayList<Integer>());
+			}
+			batchArgs.add(meta.getValues(t));
+			positions.get(sql).add(position++);
+		}
+		int[] result = new int[position];
+		for (Map.Entry<String, List<Object[]>> entry : groups.entrySet()) {
+			if (showSql) {
+				logger.debug("Upsert SQL: {}, rows: {}", entry.getKey(), entry.getValue().size());
+			}
+			int[] counts = batchUpdate(entry.getKey(), entry.getValue());
+			List<Integer> indexes = positions.get(entry.getKey());
+			for (int i = 0; i < counts.length; i++) {
+				result[indexes.get(i)] = counts[i];
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * 调用此方法前应当先查询数据库，确保对象是最新的．否则保存的数据可能出现偏差.
+	 * 实体实现了 {@link TrackedEntity} 并且有快照时，只更新与快照不同的列，没有变化时不执行 update．
 	 * @param <T> Entity Object
 	 * @param t Entity object
 	 */
 	@Transactional
 	public <T> void updateByPK(T t, boolean ignoreNull) {
-		List<Object> values = new ArrayList<Object>();
-		List<String> columns = new ArrayList<String>();
-		List<Object> pkValues = new ArrayList<Object>();
-		List<String> pkColumns = new ArrayList<String>();
-		Mapper classMapper = t.getClass().getAnnotation(Mapper.class);
-		String[] pks = classMapper.primaryKey();
-		if (pks == null || pks.length < 1) {
-			throw new IllegalStateException("Mapper#primaryKey annotation not found at class: " + t.getClass());
-		}
-		ReflectionUtils.doWithFields(t.getClass(), new FieldCallback() {
-			@Override
-			public void doWith(Field field) throws IllegalArgumentException, IllegalAccessException {
-				Mapper mapper = field.getAnnotation(Mapper.class);
-				String name = field.getName();
-				if (mapper == null) {
-				} else if (mapper.ignore()) {
-					return;
-				} else if (StringUtils.isNotBlank(mapper.name())) {
-					name = mapper.name();
-				}
-				if (!field.isAccessible() ) {
-					field.setAccessible(true);
-				}
-				Object v = ReflectionUtils.getField(field, t);
-				if (ignoreNull && v == null) {
-					return;
-				}
-				if (StringUtils.contain(pks, name)) {
-					pkColumns.add(name);
-					pkValues.add(v);
-					return;
-				}
-				columns.add(name);
-				values.add(v);
-			}
-		});
-		String sql = Update.table(getTableName(t, tableName)).setColumns(columns).whereColumns(pkColumns);
-		values.addAll(pkValues);
+		EntityMeta<T> meta = EntityMeta.forEntity(t);
+		Object[] values = meta.getValues(t);
+		BitSet columns = getUpdateColumns(meta, t, values, ignoreNull);
+		if (columns == null) {
+			return;
+		}
+		String sql = meta.getUpdateSql(meta.getTableName(tableName), columns);
 		if (showSql) {
 			logger.debug("Update SQL: {}", sql);
 		}
-		jdbcTemplate.update(sql, values.toArray());
+		jdbcTemplate.update(sql, meta.updateArgs(values, columns));
+		if (t instanceof TrackedEntity) {
+			((TrackedEntity) t).setSnapshot(values);
+		}
+	}
+
+	/**
+	 * @return 需要更新的列．跟踪的实体没有变化时返回 null
+	 */
+	private <T> BitSet getUpdateColumns(EntityMeta<T> meta, T t, Object[] values, boolean ignoreNull) {
+		BitSet columns = ignoreNull ? meta.nonNullColumns(values) : meta.allColumns();
+		BitSet dirty = meta.dirtyColumns(t, values);
+		if (dirty == null) {
+			return columns;
+		}
+		columns.and(dirty);
+		if (columns.isEmpty()) {
+			if (showSql) {
+				logger.debug("Skip update, entity not changed: {}", t);
+			}
+			return null;
+		}
+		return columns;
 	}
 	
 	/**
@@ -605,14 +1411,85 @@ public abstract class AbstractJdbcDao {
 		updateByPK(t, false);
 	}
 
+	/**
+	 * 批量按主键更新，不忽略 null．
+	 * @param <T> Entity Object
+	 * @param entities Entity objects
+	 * @return 每个实体的更新行数，顺序与实体一致
+	 */
+	@Transactional
+	public <T> int[] updateAllByPK(Collection<T> entities) {
+		return updateAllByPK(entities, false);
+	}
+
+	/**
+	 * 批量按主键更新．更新列相同的实体使用同一条 update 语句，按 {@link #batchSize} 分批执行 JDBC batch．
+	 * @param <T> Entity Object
+	 * @param entities Entity objects
+	 * @param ignoreNull true: 只更新值不为 null 的列，按非 null 列分组
+	 * @return 每个实体的更新行数，顺序与实体一致．驱动不返回行数时为 {@link java.sql.Statement#SUCCESS_NO_INFO}，
+	 *         跟踪的实体没有变化时为 0
+	 * @see #updateByPK(Object, boolean)
+	 */
+	@Transactional
+	public <T> int[] updateAllByPK(Collection<T> entities, boolean ignoreNull) {
+		if (StringUtils.isEmpty(entities)) {
+			return new int[0];
+		}
+		Map<String, List<Object[]>> groups = new LinkedHashMap<String, List<Object[]>>();
+		Map<String, List<Integer>> positions = new HashMap<String, List<Integer>>();
+		List<T> tracked = new ArrayList<T>();
+		List<Object[]> snapshots = new ArrayList<Object[]>();
+		int position = 0;
+		for (T t : entities) {
+			EntityMeta<T> meta = EntityMeta.forEntity(t);
+			Object[] values = meta.getValues(t);
+			BitSet columns = getUpdateColumns(meta, t, values, ignoreNull);
+			if (columns == null) {
+				position++;
+				continue;
+			}
+			if (t instanceof TrackedEntity) {
+				tracked.add(t);
+				snapshots.add(values);
+			}
+			String sql = meta.getUpdateSql(meta.getTableName(tableName), columns);
+			List<Object[]> batchArgs = groups.get(sql);
+			if (batchArgs == null) {
+				batchArgs = new ArrayList<Object[]>();
+				groups.put(sql, batchArgs);
+				positions.put(sql, new ArrayList<Integer>());
+			}
+			batchArgs.add(meta.updateArgs(values, columns));
+			positions.get(sql).add(position++);
+		}
+		int[] result = new int[position];
+		for (Map.Entry<String, List<Object[]>> entry : groups.entrySet()) {
+			if (showSql) {
+				logger.debug("Update SQL: {}, rows: {}", entry.getKey(), entry.getValue().size());
+			}
+			int[] counts = batchUpdate(entry.getKey(), entry.getValue());
+			List<Integer> indexes = positions.get(entry.getKey());
+			for (int i = 0; i < counts.length; i++) {
+				result[indexes.get(i)] = counts[i];
+			}
+		}
+		for (int i = 0; i < tracked.size(); i++) {
+			((TrackedEntity) tracked.get(i)).setSnapshot(snapshots.get(i));
+		}
+		return result;
+	}
+
 	public void update(String sql, Object...values) {
 		jdbcTemplate.update(sql, values);
 	}
 
 	public void update(Columns columns, Restriction...restrictions) {
-		String sql = Update.table(tableName).set(columns.getSetPhrase()).whereColumns(Restriction.whereSql(restrictions));
+		restrictions = prepare(restrictions);
 		List<Object> values = columns.getSetValues();
-		values.addAll(Restriction.whereValueList(restrictions));
+		StringBuilder where = new StringBuilder();
+		Restriction.render(where, values, restrictions);
+		String sql = Update.table(tableName).set(columns.getSetPhrase()).whereColumns(where.toString());
 		if (showSql) {
 			logger.debug("Update SQL: {}", sql);
 		}
@@ -621,39 +1498,12 @@ public abstract class AbstractJdbcDao {
 
 	@Transactional
 	public <T> void deleteByPK(T t) {
-		List<Object> pkValues = new ArrayList<Object>();
-		List<String> pkColumns = new ArrayList<String>();
-		Mapper classMapper = t.getClass().getAnnotation(Mapper.class);
-		String[] pks = classMapper.primaryKey();
-		if (pks == null || pks.length < 1) {
-			throw new IllegalStateException("Mapper#primaryKey annotation not found at class: " + t.getClass());
-		}
-		ReflectionUtils.doWithFields(t.getClass(), new FieldCallback() {
-			@Override
-			public void doWith(Field field) throws IllegalArgumentException, IllegalAccessException {
-				Mapper mapper = field.getAnnotation(Mapper.class);
-				String name = field.getName();
-				if (mapper == null) {
-				} else if (mapper.ignore()) {
-					return;
-				} else if (StringUtils.isNotBlank(mapper.name())) {
-					name = mapper.name();
-				}
-				if (!field.isAccessible() ) {
-					field.setAccessible(true);
-				}
-				if (StringUtils.contain(pks, name)) {
-					pkColumns.add(name);
-					pkValues.add(ReflectionUtils.getField(field, t));
-					return;
-				}
-			}
-		});
-		String sql = Delete.table(getTableName(t, tableName)).whereColumns(pkColumns);
+		EntityMeta<T> meta = EntityMeta.forEntity(t);
+		String sql = meta.getDeleteSql(meta.getTableName(tableName));
 		if (showSql) {
-			logger.debug("Update SQL: {}", sql);
+			logger.debug("Delete SQL: {}", sql);
 		}
-		jdbcTemplate.update(sql, pkValues.toArray());
+		jdbcTemplate.update(sql, meta.getPrimaryKeyValues(t));
 	}
 
 	/**
@@ -668,11 +1518,106 @@ public abstract class AbstractJdbcDao {
 		jdbcTemplate.update(sql, id);
 	}
 
+	/**
+	 * 按主键值批量删除，每条语句为 delete from table where pk in(...)，每条最多 {@link #deleteChunkSize} 个参数．
+	 * 表名和主键列与 {@link #deleteAllByPK(Collection)} 一样由实体类的 Mapper 注解确定，只支持单列主键．
+	 * @param <T> Entity Object
+	 * @param entityClass 实体类
+	 * @param ids 主键值
+	 * @return 删除的行数
+	 */
+	@Transactional
+	public <T> int deleteAll(Class<T> entityClass, Collection<?> ids) {
+		if (StringUtils.isEmpty(ids)) {
+			return 0;
+		}
+		EntityMeta<T> meta = EntityMeta.forClass(entityClass);
+		String[] pks = meta.getPrimaryKeyColumns();
+		if (pks.length != 1) {
+			throw new IllegalStateException("Mapper#primaryKey annotation with one column not found at class: " + entityClass);
+		}
+		return deleteIn(meta.getTableName(tableName), pks[0], new ArrayList<Object>(ids));
+	}
+
+	/**
+	 * 按主键批量删除．单列主键使用 where pk in(...)，每条最多 {@link #deleteChunkSize} 个参数；
+	 * 复合主键使用 delete ... where pk1 = ? and pk2 = ?，按 {@link #batchSize} 分批执行 JDBC batch．
+	 * @param <T> Entity Object
+	 * @param entities Entity objects
+	 * @return 删除的行数．驱动对 batch 中的语句返回 {@link Statement#SUCCESS_NO_INFO} 时该语句按 1 行计算，结果为上限
+	 */
+	@Transactional
+	public <T> int deleteAllByPK(Collection<T> entities) {
+		if (StringUtils.isEmpty(entities)) {
+			return 0;
+		}
+		Map<String, List<Object[]>> groups = new LinkedHashMap<String, List<Object[]>>();
+		Map<String, EntityMeta<?>> metas = new HashMap<String, EntityMeta<?>>();
+		for (T t : entities) {
+			EntityMeta<T> meta = EntityMeta.forEntity(t);
+			String table = meta.getTableName(tableName);
+			List<Object[]> pkValues = groups.get(table);
+			if (pkValues == null) {
+				pkValues = new ArrayList<Object[]>();
+				groups.put(table, pkValues);
+				metas.put(table, meta);
+			}
+			pkValues.add(meta.getPrimaryKeyValues(t));
+		}
+		int count = 0;
+		for (Map.Entry<String, List<Object[]>> entry : groups.entrySet()) {
+			String table = entry.getKey();
+			EntityMeta<?> meta = metas.get(table);
+			String[] pks = meta.getPrimaryKeyColumns();
+			if (pks.length == 1) {
+				List<Object> ids = new ArrayList<Object>(entry.getValue().size());
+				for (Object[] pkValues : entry.getValue()) {
+					ids.add(pkValues[0]);
+				}
+				count += deleteIn(table, pks[0], ids);
+				continue;
+			}
+			String sql = meta.getDeleteSql(table);
+			if (showSql) {
+				logger.debug("Delete SQL: {}, rows: {}", sql, entry.getValue().size());
+			}
+			for (int c : batchUpdate(sql, entry.getValue())) {
+				if (c == Statement.SUCCESS_NO_INFO) {
+					// 语句执行成功但驱动不返回行数，按主键删除最多 1 行
+					count += 1;
+				} else if (c > 0) {
+					count += c;
+				}
+			}
+		}
+		return count;
+	}
+
+	private int deleteIn(String table, String column, List<Object> values) {
+		int size = deleteChunkSize > 0 ? inListChunkSize(deleteChunkSize) : values.size();
+		int count = 0;
+		for (int from = 0; from < values.size(); from += size) {
+			List<Object> chunk = values.subList(from, Math.min(from + size, values.size()));
+			// sql 和参数取自同一个条件树，开启 in 补齐时两者一致
+			List<Object> args = new ArrayList<Object>();
+			String sql = getDeleteSql(table, args, prepare(Restriction.in(column, chunk)));
+			if (showSql) {
+				logger.debug("Delete SQL: {}", sql);
+			}
+			count += jdbcTemplate.update(sql, args.toArray());
+		}
+		return count;
+	}
+
 	private String getTableName(Object mapperObj, String tableName) {
 		if (mapperObj instanceof RsMapper) {
 			Mapper tmapper = ((RsMapper<?>) mapperObj).getMapper();
 			return getTableName(tmapper, tableName);
 		}
+		if (mapperObj instanceof GeneratedRowMapper) {
+			Mapper tmapper = ((GeneratedRowMapper<?>) mapperObj).getMapper();
+			return getTableName(tmapper, tableName);
+		}
 		Mapper tmapper = mapperObj.getClass().getAnnotation(Mapper.class);
 		return getTableName(tmapper, tableName);
 	}
@@ -686,4 +1631,27 @@ public abstract class AbstractJdbcDao {
 		}
 		return tableName;
 	} 
+
+	/**
+	 * 批量保存的方式．
+	 */
+	public static enum InsertMode {
+		/** 单行 insert 语句组成 JDBC batch */
+		BATCH,
+		/** 一条 insert 语句写入多行: insert into t(a,b) values (?,?),(?,?)．参数个数受 maxInsertParameters 限制 */
+		MULTI_VALUES
+	}
+
+	/** 表名和列相同的一组待插入行 */
+	private static class InsertGroup {
+		final EntityMeta<?> meta;
+		final String table;
+		final BitSet columns;
+		final List<Object[]> batchArgs = new ArrayList<Object[]>();
+		InsertGroup(EntityMeta<?> meta, String table, BitSet columns) {
+			this.meta = meta;
+			this.table = table;
+			this.columns = columns;
+		}
+	}
 }
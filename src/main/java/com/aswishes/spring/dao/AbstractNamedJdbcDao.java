@@ -1,5 +1,6 @@
 package com.aswishes.spring.dao;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -16,6 +17,10 @@ import com.aswishes.spring.PageResult;
 
 @Transactional
 public abstract class AbstractNamedJdbcDao extends AbstractJdbcDao {
+	/** 分页语句中 offset 的参数名 */
+	public static final String OFFSET_PARAM = "limitOffset";
+	/** 分页语句中 limit 的参数名 */
+	public static final String LIMIT_PARAM = "limitRows";
 	protected NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 
 	@Autowired
@@ -60,8 +65,11 @@ public abstract class AbstractNamedJdbcDao extends AbstractJdbcDao {
 	}
 
 	public <E> List<E> namedQueryList(String sql, Map<String, ?> param, RowMapper<E> mapper, int pageNo, int pageSize) {
-		sql += getLimitSql(pageNo, pageSize);
-		return namedParameterJdbcTemplate.query(sql, param, mapper);
+		sql = getNamedLimitSql(sql);
+		if (showSql) {
+			logger.debug("Select SQL: {}", sql);
+		}
+		return namedParameterJdbcTemplate.query(sql, getLimitParams(param, pageNo, pageSize), mapper);
 	}
 
 	public <E> PageResult<E> namedQueryPage(final String countSql, final String dataSql, final Map<String, ?> param, final RowMapper<E> mapper, int pageNo, int pageSize) {
@@ -84,11 +92,11 @@ public abstract class AbstractNamedJdbcDao extends AbstractJdbcDao {
 	}
 
 	public List<Map<String, Object>> namedQueryList(String sql, Map<String, ?> param, int pageNo, int pageSize) {
-		sql += getLimitSql(pageNo, pageSize);
+		sql = getNamedLimitSql(sql);
 		if (showSql) {
 			logger.debug("Select SQL: {}", sql);
 		}
-		return namedParameterJdbcTemplate.queryForList(sql, param);
+		return namedParameterJdbcTemplate.queryForList(sql, getLimitParams(param, pageNo, pageSize));
 	}
 
 	public PageResult<Map<String, Object>> namedQueryPage(final String countSql, final String dataSql, final Map<String, ?> param, int pageNo, int pageSize) {
@@ -99,7 +107,7 @@ public abstract class AbstractNamedJdbcDao extends AbstractJdbcDao {
 			}
 			@Override
 			public List<Map<String, Object>> query(int startIndex, int pageNo, int pageSize) throws Exception {
-				return namedQueryList(dataSql, param, startIndex, pageSize);
+				return namedQueryList(dataSql, param, pageNo, pageSize);
 			}
 		};
 		try {
@@ -110,6 +118,28 @@ public abstract class AbstractNamedJdbcDao extends AbstractJdbcDao {
 		return wrapper;
 	}
 
+	/**
+	 * @param sql 查询语句
+	 * @return 由方言生成的分页语句，offset 和 limit 使用命名参数 {@link #OFFSET_PARAM}, {@link #LIMIT_PARAM}
+	 */
+	protected String getNamedLimitSql(String sql) {
+		return getDialect().limit(sql, ":" + OFFSET_PARAM, ":" + LIMIT_PARAM);
+	}
+
+	/**
+	 * @param param 查询参数，不会被修改
+	 * @return 包含查询参数和分页参数的新 Map
+	 */
+	protected Map<String, Object> getLimitParams(Map<String, ?> param, int pageNo, int pageSize) {
+		Map<String, Object> result = new HashMap<String, Object>(param == null ? 4 : (param.size() + 2) * 4 / 3 + 1);
+		if (param != null) {
+			result.putAll(param);
+		}
+		result.put(OFFSET_PARAM, getStartIndex(pageNo, pageSize));
+		result.put(LIMIT_PARAM, pageSize);
+		return result;
+	}
+
 	public Long namedSave(final String sql, final Map<String, ?> values) {
 		KeyHolder holder = new GeneratedKeyHolder();
 		namedParameterJdbcTemplate.update(sql, new MapSqlParameterSource(values), holder);
@@ -0,0 +1,106 @@
+package com.aswishes.spring.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 逐行读取结果集的 Spliterator．持有连接、语句和结果集，直到 {@link #close()} 或读完最后一行．
+ * @author lizhou
+ */
+class ResultSetSpliterator<E> extends Spliterators.AbstractSpliterator<E> implements AutoCloseable {
+	private final JdbcTemplate jdbcTemplate;
+	private final String sql;
+	private final RowMapper<E> mapper;
+	private final DataSource dataSource;
+	/** true: 连接由当前事务管理，关闭时交还给事务 */
+	private final boolean transactional;
+	/** 单独占用的连接原来的自动提交状态，关闭时恢复 */
+	private boolean autoCommit = false;
+	private Connection con;
+	private PreparedStatement ps;
+	private ResultSet rs;
+	private int rowNum = 0;
+	private boolean closed = false;
+
+	ResultSetSpliterator(JdbcTemplate jdbcTemplate, String sql, RowMapper<E> mapper, int fetchSize, Object... args) {
+		super(Long.MAX_VALUE, Spliterator.ORDERED);
+		this.jdbcTemplate = jdbcTemplate;
+		this.sql = sql;
+		this.mapper = mapper;
+		this.dataSource = jdbcTemplate.getDataSource();
+		this.transactional = TransactionSynchronizationManager.isActualTransactionActive();
+		try {
+			// 没有事务时不通过 DataSourceUtils 获取连接，避免连接在当前方法返回时被事务同步释放
+			con = transactional ? DataSourceUtils.getConnection(dataSource) : dataSource.getConnection();
+			if (!transactional && con.getAutoCommit()) {
+				// PostgreSQL 等驱动在自动提交模式下忽略 fetchSize，一次读取全部结果
+				con.setAutoCommit(false);
+				autoCommit = true;
+			}
+			ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			ps.setFetchSize(fetchSize);
+			for (int i = 0; i < args.length; i++) {
+				StatementCreatorUtils.setParameterValue(ps, i + 1, SqlTypeValue.TYPE_UNKNOWN, args[i]);
+			}
+			rs = ps.executeQuery();
+		} catch (SQLException e) {
+			close();
+			throw jdbcTemplate.getExceptionTranslator().translate("Stream query", sql, e);
+		}
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super E> action) {
+		if (closed) {
+			return false;
+		}
+		try {
+			if (!rs.next()) {
+				close();
+				return false;
+			}
+			action.accept(mapper.mapRow(rs, rowNum++));
+			return true;
+		} catch (SQLException e) {
+			close();
+			throw jdbcTemplate.getExceptionTranslator().translate("Stream query", sql, e);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		JdbcUtils.closeResultSet(rs);
+		JdbcUtils.closeStatement(ps);
+		if (transactional) {
+			DataSourceUtils.releaseConnection(con, dataSource);
+		} else {
+			if (autoCommit) {
+				try {
+					con.setAutoCommit(true);
+				} catch (SQLException e) {
+					// 连接随后关闭，恢复失败不影响查询结果
+				}
+			}
+			JdbcUtils.closeConnection(con);
+		}
+	}
+}
@@ -0,0 +1,235 @@
+package com.aswishes.spring.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 延迟批量写入．多个线程提交的实体先进入队列，由一个后台线程合并成批，
+ * 达到 maxBatchSize 或等待超过 flushInterval 时通过 {@link AbstractJdbcDao#saveAll(java.util.Collection)} 一次写入，
+ * 提交返回的 future 在该批事务提交后完成，写入失败时以异常完成．
+ * 创建后调用 {@link #start()} 启动后台线程．队列满时 {@link #submit(Object)} 阻塞．
+ * 应用关闭时需要调用 {@link #close()}，写完队列中剩余的实体．
+ * 后台线程遇到 Error 等非预期异常时停止，批次和队列中的实体以该异常完成，之后的提交抛出 IllegalStateException．
+ * @author lizhou
+ * @param <T> 实体类型
+ */
+public class WriteBehindBuffer<T> implements AutoCloseable {
+	private static final Logger logger = LoggerFactory.getLogger(WriteBehindBuffer.class);
+
+	private final AbstractJdbcDao dao;
+	private final int maxBatchSize;
+	private final long flushIntervalNanos;
+	private final BlockingQueue<Pending<T>> queue;
+	private final Thread flusher;
+	/** 不为 null 时每批在一个编程式事务中写入，否则依赖 saveAll 的 @Transactional */
+	private volatile TransactionTemplate transactionTemplate;
+	private volatile boolean running = true;
+	private boolean started = false;
+
+	/**
+	 * @param dao 写入使用的 DAO
+	 * @param maxBatchSize 每批最多写入的实体数
+	 * @param flushIntervalMillis 第一个实体进入队列后最多等待的毫秒数
+	 */
+	public WriteBehindBuffer(AbstractJdbcDao dao, int maxBatchSize, long flushIntervalMillis) {
+		this(dao, maxBatchSize, flushIntervalMillis, maxBatchSize * 16);
+	}
+
+	/**
+	 * @param dao 写入使用的 DAO
+	 * @param maxBatchSize 每批最多写入的实体数
+	 * @param flushIntervalMillis 第一个实体进入队列后最多等待的毫秒数
+	 * @param capacity 队列容量
+	 */
+	public WriteBehindBuffer(AbstractJdbcDao dao, int maxBatchSize, long flushIntervalMillis, int capacity) {
+		if (maxBatchSize < 1 || flushIntervalMillis < 0) {
+			throw new IllegalArgumentException("maxBatchSize must be greater than 0 and flushIntervalMillis can not be negative.");
+		}
+		this.dao = dao;
+		this.maxBatchSize = maxBatchSize;
+		this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+		this.queue = new LinkedBlockingQueue<Pending<T>>(capacity);
+		this.flusher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				flushLoop();
+			}
+		}, "write-behind-" + dao.getClass().getSimpleName());
+		this.flusher.setDaemon(true);
+	}
+
+	/**
+	 * 启动后台写入线程，只能调用一次．
+	 * @return this
+	 */
+	public synchronized WriteBehindBuffer<T> start() {
+		if (started) {
+			throw new IllegalStateException("Write behind buffer is already started.");
+		}
+		if (!running) {
+			throw new IllegalStateException("Write behind buffer is closed.");
+		}
+		started = true;
+		flusher.start();
+		return this;
+	}
+
+	public void setTransactionTemplate(TransactionTemplate transactionTemplate) {
+		this.transactionTemplate = transactionTemplate;
+	}
+
+	/**
+	 * @param entity 实体对象
+	 * @return 实体所在批次提交后完成的 future
+	 */
+	public CompletableFuture<Void> submit(T entity) {
+		if (!running) {
+			throw new IllegalStateException("Write behind buffer is closed.");
+		}
+		Pending<T> pending = new Pending<T>(entity);
+		try {
+			queue.put(pending);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			pending.future.completeExceptionally(e);
+			return pending.future;
+		}
+		// 与 close 并发时，后台线程可能已经检查过队列并退出．仍在队列中的实体不会再被写入
+		if (!running && queue.remove(pending)) {
+			pending.future.completeExceptionally(new IllegalStateException("Write behind buffer is closed."));
+		}
+		return pending.future;
+	}
+
+	/**
+	 * @return 队列中等待写入的实体数
+	 */
+	public int getPendingCount() {
+		return queue.size();
+	}
+
+	/**
+	 * 停止接收新的实体，写完队列中剩余的实体后返回．
+	 */
+	@Override
+	public void close() {
+		boolean wasStarted;
+		synchronized (this) {
+			running = false;
+			wasStarted = started;
+		}
+		if (!wasStarted) {
+			failQueued(new IllegalStateException("Write behind buffer is closed before started."));
+			return;
+		}
+		try {
+			flusher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void flushLoop() {
+		List<Pending<T>> batch = new ArrayList<Pending<T>>(maxBatchSize);
+		try {
+			flushLoop(batch);
+		} catch (Throwable e) {
+			running = false;
+			logger.error("Write behind flusher stopped", e);
+			for (Pending<T> pending : batch) {
+				pending.future.completeExceptionally(e);
+			}
+			failQueued(e);
+		}
+	}
+
+	/**
+	 * @param batch 当前批次，每批写入后清空．异常时其中为未完成的实体
+	 */
+	private void flushLoop(List<Pending<T>> batch) {
+		long pollNanos = flushIntervalNanos > 0 ? flushIntervalNanos : TimeUnit.MILLISECONDS.toNanos(100);
+		while (running || !queue.isEmpty()) {
+			try {
+				Pending<T> first = queue.poll(pollNanos, TimeUnit.NANOSECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				long deadline = System.nanoTime() + flushIntervalNanos;
+				while (batch.size() < maxBatchSize) {
+					if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+						continue;
+					}
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0 || !running) {
+						break;
+					}
+					Pending<T> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+				flush(batch);
+				batch.clear();
+			} catch (InterruptedException e) {
+				running = false;
+			}
+		}
+	}
+
+	private void failQueued(Throwable e) {
+		List<Pending<T>> rest = new ArrayList<Pending<T>>();
+		queue.drainTo(rest);
+		for (Pending<T> pending : rest) {
+			pending.future.completeExceptionally(e);
+		}
+	}
+
+	private void flush(List<Pending<T>> batch) {
+		final List<T> entities = new ArrayList<T>(batch.size());
+		for (Pending<T> pending : batch) {
+			entities.add(pending.entity);
+		}
+		try {
+			TransactionTemplate template = transactionTemplate;
+			if (template == null) {
+				dao.saveAll(entities);
+			} else {
+				template.execute(new TransactionCallbackWithoutResult() {
+					@Override
+					protected void doInTransactionWithoutResult(TransactionStatus status) {
+						dao.saveAll(entities);
+					}
+				});
+			}
+		} catch (RuntimeException e) {
+			logger.error("Write behind flush failed, rows: " + entities.size(), e);
+			for (Pending<T> pending : batch) {
+				pending.future.completeExceptionally(e);
+			}
+			return;
+		}
+		for (Pending<T> pending : batch) {
+			pending.future.complete(null);
+		}
+	}
+
+	private static class Pending<T> {
+		final T entity;
+		final CompletableFuture<Void> future = new CompletableFuture<Void>();
+		Pending(T entity) {
+			this.entity = entity;
+		}
+	}
+}
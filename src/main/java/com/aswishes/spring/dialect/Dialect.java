@@ -0,0 +1,31 @@
+package com.aswishes.spring.dialect;
+
+/**
+ * 数据库方言．生成不同数据库语法不同的 SQL 语句．
+ * @author lizhou
+ */
+public interface Dialect {
+
+	/**
+	 * 插入或更新一行：主键不存在时 insert，存在时更新非主键列．参数顺序与 columns 一致．
+	 * @param tableName 表名
+	 * @param columns 所有列，包括主键列
+	 * @param primaryKeys 主键列
+	 * @return upsert 语句
+	 */
+	public String upsert(String tableName, String[] columns, String[] primaryKeys);
+
+	/**
+	 * 分页查询．offset 和 limit 以参数绑定，语句文本与页码无关，可以复用数据库的执行计划．
+	 * @param sql 查询语句
+	 * @param offset 跳过行数的占位符，如 "?" 或 ":offset"
+	 * @param limit 返回行数的占位符
+	 * @return 分页语句
+	 */
+	public String limit(String sql, String offset, String limit);
+
+	/**
+	 * @return true: {@link #limit(String, String, String)} 生成的语句中 offset 在 limit 之前
+	 */
+	public boolean isOffsetFirst();
+}
@@ -0,0 +1,52 @@
+package com.aswishes.spring.dialect;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import com.aswishes.spring.exception.RDbException;
+
+/**
+ * 根据数据库产品名称选择方言．
+ * @author lizhou
+ */
+public class Dialects {
+
+	/**
+	 * @param dataSource 数据源
+	 * @return 数据库对应的方言
+	 */
+	public static Dialect of(DataSource dataSource) {
+		try {
+			String productName = (String) JdbcUtils.extractDatabaseMetaData(dataSource, "getDatabaseProductName");
+			return of(productName);
+		} catch (MetaDataAccessException e) {
+			throw new RDbException("Can not read database product name.", e);
+		}
+	}
+
+	/**
+	 * @param productName DatabaseMetaData#getDatabaseProductName
+	 * @return 数据库对应的方言，未知数据库使用 {@link StandardDialect}
+	 */
+	public static Dialect of(String productName) {
+		String name = productName == null ? "" : productName.toLowerCase();
+		if (name.contains("mysql") || name.contains("mariadb")) {
+			return new MySqlDialect();
+		}
+		if (name.contains("h2")) {
+			return new H2Dialect();
+		}
+		if (name.contains("postgresql")) {
+			return new PostgreSqlDialect();
+		}
+		if (name.contains("oracle")) {
+			return new OracleDialect();
+		}
+		if (name.contains("sql server")) {
+			return new SqlServerDialect();
+		}
+		return new StandardDialect();
+	}
+}
@@ -0,0 +1,26 @@
+package com.aswishes.spring.dialect;
+
+import com.aswishes.spring.Restriction;
+
+/**
+ * H2．upsert 使用 merge into ... key(...) values (...)，分页使用 limit ... offset ...
+ * @author lizhou
+ */
+public class H2Dialect implements Dialect {
+
+	@Override
+	public String upsert(String tableName, String[] columns, String[] primaryKeys) {
+		return "merge into " + tableName + "(" + Restriction.join(columns, ",") + ") key("
+				+ Restriction.join(primaryKeys, ",") + ") values (" + Restriction.repeat("?", ", ", columns.length) + ")";
+	}
+
+	@Override
+	public String limit(String sql, String offset, String limit) {
+		return sql + " limit " + limit + " offset " + offset;
+	}
+
+	@Override
+	public boolean isOffsetFirst() {
+		return false;
+	}
+}
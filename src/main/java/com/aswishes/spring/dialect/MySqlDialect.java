@@ -0,0 +1,42 @@
+package com.aswishes.spring.dialect;
+
+import com.aswishes.spring.SqlHelper.Insert;
+import com.aswishes.spring.StringUtils;
+
+/**
+ * MySQL/MariaDB．upsert 使用 insert ... on duplicate key update，分页使用 limit offset, limit
+ * @author lizhou
+ */
+public class MySqlDialect implements Dialect {
+
+	@Override
+	public String upsert(String tableName, String[] columns, String[] primaryKeys) {
+		StringBuilder sql = new StringBuilder(Insert.table(tableName).columns(columns));
+		sql.append(" on duplicate key update ");
+		int count = 0;
+		for (String column : columns) {
+			if (StringUtils.contain(primaryKeys, column)) {
+				continue;
+			}
+			if (count++ > 0) {
+				sql.append(", ");
+			}
+			sql.append(column).append(" = values(").append(column).append(")");
+		}
+		if (count == 0) {
+			// 只有主键列，重复时不更新
+			sql.append(primaryKeys[0]).append(" = ").append(primaryKeys[0]);
+		}
+		return sql.toString();
+	}
+
+	@Override
+	public String limit(String sql, String offset, String limit) {
+		return sql + " limit " + offset + ", " + limit;
+	}
+
+	@Override
+	public boolean isOffsetFirst() {
+		return true;
+	}
+}
@@ -0,0 +1,13 @@
+package com.aswishes.spring.dialect;
+
+/**
+ * Oracle．upsert 使用 merge into ... using (select ... from dual)，分页使用 12c 的 offset/fetch
+ * @author lizhou
+ */
+public class OracleDialect extends StandardDialect {
+
+	@Override
+	protected String sourceSuffix() {
+		return " from dual";
+	}
+}
@@ -0,0 +1,40 @@
+package com.aswishes.spring.dialect;
+
+import com.aswishes.spring.Restriction;
+import com.aswishes.spring.SqlHelper.Insert;
+import com.aswishes.spring.StringUtils;
+
+/**
+ * PostgreSQL 9.5+．upsert 使用 insert ... on conflict (...) do update，分页使用 limit ... offset ...
+ * @author lizhou
+ */
+public class PostgreSqlDialect implements Dialect {
+
+	@Override
+	public String upsert(String tableName, String[] columns, String[] primaryKeys) {
+		StringBuilder sql = new StringBuilder(Insert.table(tableName).columns(columns));
+		sql.append(" on conflict (").append(Restriction.join(primaryKeys, ",")).append(") do ");
+		int count = 0;
+		for (String column : columns) {
+			if (StringUtils.contain(primaryKeys, column)) {
+				continue;
+			}
+			sql.append(count++ > 0 ? ", " : "update set ");
+			sql.append(column).append(" = excluded.").append(column);
+		}
+		if (count == 0) {
+			sql.append("nothing");
+		}
+		return sql.toString();
+	}
+
+	@Override
+	public String limit(String sql, String offset, String limit) {
+		return sql + " limit " + limit + " offset " + offset;
+	}
+
+	@Override
+	public boolean isOffsetFirst() {
+		return false;
+	}
+}
@@ -0,0 +1,21 @@
+package com.aswishes.spring.dialect;
+
+/**
+ * SQL Server 2012+．merge 语句需要以分号结束；offset/fetch 必须有 order by，没有时按 (select null) 排序
+ * @author lizhou
+ */
+public class SqlServerDialect extends StandardDialect {
+
+	@Override
+	public String upsert(String tableName, String[] columns, String[] primaryKeys) {
+		return super.upsert(tableName, columns, primaryKeys) + ";";
+	}
+
+	@Override
+	public String limit(String sql, String offset, String limit) {
+		if (!sql.toLowerCase().contains("order by")) {
+			sql = sql + " order by (select null)";
+		}
+		return super.limit(sql, offset, limit);
+	}
+}
@@ -0,0 +1,73 @@
+package com.aswishes.spring.dialect;
+
+import com.aswishes.spring.StringUtils;
+
+/**
+ * SQL 标准语法：upsert 使用 SQL:2003 merge，分页使用 SQL:2008 offset/fetch．适用于 Oracle、SQL Server、DB2 等数据库．
+ * @author lizhou
+ */
+public class StandardDialect implements Dialect {
+
+	@Override
+	public String upsert(String tableName, String[] columns, String[] primaryKeys) {
+		StringBuilder sql = new StringBuilder("merge into ").append(tableName).append(" t using (select ");
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				sql.append(", ");
+			}
+			sql.append("? ").append(columns[i]);
+		}
+		sql.append(sourceSuffix()).append(") s on (");
+		for (int i = 0; i < primaryKeys.length; i++) {
+			if (i > 0) {
+				sql.append(" and ");
+			}
+			sql.append("t.").append(primaryKeys[i]).append(" = s.").append(primaryKeys[i]);
+		}
+		sql.append(")");
+		int count = 0;
+		for (String column : columns) {
+			if (StringUtils.contain(primaryKeys, column)) {
+				continue;
+			}
+			sql.append(count++ > 0 ? ", " : " when matched then update set ");
+			sql.append("t.").append(column).append(" = s.").append(column);
+		}
+		sql.append(" when not matched then insert (");
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				sql.append(", ");
+			}
+			sql.append(columns[i]);
+		}
+		sql.append(") values (");
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				sql.append(", ");
+			}
+			sql.append("s.").append(columns[i]);
+		}
+		sql.append(")");
+		return sql.toString();
+	}
+
+	/**
+	 * SQL:2008 offset ... rows fetch next ... rows only，适用于 Oracle 12c+、SQL Server 2012+、DB2．
+	 */
+	@Override
+	public String limit(String sql, String offset, String limit) {
+		return sql + " offset " + offset + " rows fetch next " + limit + " rows only";
+	}
+
+	@Override
+	public boolean isOffsetFirst() {
+		return true;
+	}
+
+	/**
+	 * @return merge 数据源子查询的 from 部分，如 Oracle 的 " from dual"
+	 */
+	protected String sourceSuffix() {
+		return "";
+	}
+}
@@ -0,0 +1,14 @@
+package com.aswishes.spring.id;
+
+/**
+ * 主键生成器．设置到 DAO 后，save/saveAll 在单列主键为 null 时先生成主键再写入，不再依赖数据库自增．
+ * @author lizhou
+ */
+public interface IdGenerator {
+
+	/**
+	 * @param sequenceName 序列名称，DAO 使用表名
+	 * @return 下一个主键，同一序列内不重复
+	 */
+	public long nextId(String sequenceName);
+}
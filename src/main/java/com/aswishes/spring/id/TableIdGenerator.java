@@ -0,0 +1,118 @@
+package com.aswishes.spring.id;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 基于序列表的号段(hi-lo)主键生成器．每次从序列表中取一段 blockSize 个主键，号段内的分配只使用 CAS，不访问数据库．
+ * 序列表结构：
+ * <pre>
+ * create table id_sequence (name varchar(64) primary key, next_val bigint not null)
+ * </pre>
+ * 号段在独立的事务中分配，调用方事务回滚不会导致主键重复．应用重启时未用完的号段被丢弃，主键连续但不保证无间隙．
+ * @author lizhou
+ */
+public class TableIdGenerator implements IdGenerator {
+	public static final String DEFAULT_TABLE = "id_sequence";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+	private final int blockSize;
+	private final String updateSql;
+	private final String insertSql;
+	private final String selectSql;
+	private final ConcurrentMap<String, Block> blocks = new ConcurrentHashMap<String, Block>();
+	private final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<String, Object>();
+
+	public TableIdGenerator(JdbcTemplate jdbcTemplate, int blockSize) {
+		this(jdbcTemplate, DEFAULT_TABLE, blockSize);
+	}
+
+	/**
+	 * @param jdbcTemplate 访问序列表
+	 * @param tableName 序列表名称，包含 name 和 next_val 两列
+	 * @param blockSize 每次分配的主键个数
+	 */
+	public TableIdGenerator(JdbcTemplate jdbcTemplate, String tableName, int blockSize) {
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("blockSize must be greater than 0.");
+		}
+		this.jdbcTemplate = jdbcTemplate;
+		this.blockSize = blockSize;
+		this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+		this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		this.updateSql = "update " + tableName + " set next_val = next_val + ? where name = ?";
+		this.insertSql = "insert into " + tableName + "(name, next_val) values (?, ?)";
+		this.selectSql = "select next_val from " + tableName + " where name = ?";
+	}
+
+	@Override
+	public long nextId(String sequenceName) {
+		for (;;) {
+			Block block = blocks.get(sequenceName);
+			if (block != null) {
+				long id = block.next.getAndIncrement();
+				if (id < block.end) {
+					return id;
+				}
+			}
+			synchronized (getLock(sequenceName)) {
+				if (blocks.get(sequenceName) == block) {
+					blocks.put(sequenceName, allocate(sequenceName));
+				}
+			}
+		}
+	}
+
+	private Object getLock(String sequenceName) {
+		Object lock = locks.get(sequenceName);
+		if (lock == null) {
+			lock = new Object();
+			Object existing = locks.putIfAbsent(sequenceName, lock);
+			if (existing != null) {
+				lock = existing;
+			}
+		}
+		return lock;
+	}
+
+	/**
+	 * 在独立事务中把 next_val 增加 blockSize，返回 [next_val - blockSize, next_val) 号段．序列不存在时从 1 开始．
+	 */
+	private Block allocate(final String sequenceName) {
+		TransactionCallback<Block> callback = new TransactionCallback<Block>() {
+			@Override
+			public Block doInTransaction(TransactionStatus status) {
+				if (jdbcTemplate.update(updateSql, blockSize, sequenceName) == 0) {
+					jdbcTemplate.update(insertSql, sequenceName, 1L + blockSize);
+				}
+				Long end = jdbcTemplate.queryForObject(selectSql, Long.class, sequenceName);
+				return new Block(end - blockSize, end);
+			}
+		};
+		try {
+			return transactionTemplate.execute(callback);
+		} catch (DuplicateKeyException e) {
+			// 其他节点同时创建了序列，重新分配
+			return transactionTemplate.execute(callback);
+		}
+	}
+
+	private static class Block {
+		final AtomicLong next;
+		final long end;
+		Block(long start, long end) {
+			this.next = new AtomicLong(start);
+			this.end = end;
+		}
+	}
+}
@@ -1,22 +1,28 @@
 package com.aswishes.spring.mapper;
 
+import java.math.BigDecimal;
+
+/**
+ * 列值转换为 boolean．列的类型不确定，按 {@link java.sql.ResultSet#getObject(int)} 的结果判断：
+ * Boolean 取原值；数值(任意 Number，包括 BigDecimal)非 0 为 true；
+ * 字符串 YES, OK, Y, 1, 是 (不区分大小写)为 true；null 和其他类型为 false．
+ * 数值标志列使用 {@link NumberBooleanConverter}，读取时不产生装箱．
+ * @author lizhou
+ */
 public class BooleanConverter implements TypeConverter {
 
 	public Object convert(Object v) {
 		if (v == null) {
 			return false;
 		}
-		if (v instanceof Byte) {
-			return ((Byte) v).byteValue() != 0;
-		}
-		if (v instanceof Short) {
-			return ((Short) v).shortValue() != 0;
+		if (v instanceof Boolean) {
+			return v;
 		}
-		if (v instanceof Integer) {
-			return ((Integer) v).intValue() != 0;
+		if (v instanceof BigDecimal) {
+			return ((BigDecimal) v).signum() != 0;
 		}
-		if (v instanceof Long) {
-			return ((Long) v).longValue() != 0;
+		if (v instanceof Number) {
+			return ((Number) v).doubleValue() != 0;
 		}
 		if (v instanceof String) {
 			String s = String.valueOf(v).trim();
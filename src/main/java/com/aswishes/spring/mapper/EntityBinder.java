@@ -0,0 +1,43 @@
+package com.aswishes.spring.mapper;
+
+/**
+ * 实体的 insert/update/delete 参数绑定器．由注解处理器在编译期生成，取值时不使用反射．
+ * 列顺序与对应的值数组顺序一致．
+ * @author lizhou
+ * @param <T> 实体类型
+ */
+public interface EntityBinder<T> {
+
+	/**
+	 * @return insert 语句的列，即所有未被忽略的列
+	 */
+	public String[] insertColumns();
+
+	/**
+	 * @param entity 实体对象
+	 * @return 与 {@link #insertColumns()} 顺序一致的值
+	 */
+	public Object[] insertValues(T entity);
+
+	/**
+	 * @return update 语句 set 部分的列，即除主键外所有未被忽略的列
+	 */
+	public String[] updateColumns();
+
+	/**
+	 * @param entity 实体对象
+	 * @return {@link #updateColumns()} 的值，后面紧跟主键值．可以直接作为 update ... where pk = ? 的参数
+	 */
+	public Object[] updateValues(T entity);
+
+	/**
+	 * @return 主键列
+	 */
+	public String[] primaryKeyColumns();
+
+	/**
+	 * @param entity 实体对象
+	 * @return 与 {@link #primaryKeyColumns()} 顺序一致的主键值
+	 */
+	public Object[] primaryKeyValues(T entity);
+}
@@ -0,0 +1,476 @@
+package com.aswishes.spring.mapper;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.util.ClassUtils;
+import org.springframework.util.NumberUtils;
+
+import com.aswishes.spring.SqlHelper.Delete;
+import com.aswishes.spring.SqlHelper.Insert;
+import com.aswishes.spring.SqlHelper.Update;
+import com.aswishes.spring.StringUtils;
+import com.aswishes.spring.dialect.Dialect;
+
+/**
+ * 实体的写入元数据：列、主键、表名、取值器和 SQL 模板．每个实体类只解析一次，之后写入时不再使用反射．
+ * 存在注解处理器生成的 {@link EntityBinder} 时，列和取值都由生成类提供．
+ * 列包括实体及其父类中所有未被忽略的非静态、非 transient 字段，顺序与字段声明顺序一致(子类在前)，同名列使用父类字段．
+ * transient 字段(如 {@link TrackedEntity} 的快照)不写入数据库．
+ * @author lizhou
+ * @param <T> 实体类型
+ */
+public class EntityMeta<T> {
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+	private static Map<Class<?>, EntityMeta<?>> cache = new ConcurrentHashMap<Class<?>, EntityMeta<?>>();
+
+	private final Class<T> entityClass;
+	private final String tableName;
+	private final String[] columns;
+	private final String[] primaryKeyColumns;
+	/** 主键列在 columns 中的序号 */
+	private final int[] primaryKeyIndexes;
+	/** 非主键列在 columns 中的序号 */
+	private final BitSet updateColumns;
+	/** (Object)Object, 与 columns 顺序一致．使用生成的绑定器时为 null */
+	private final MethodHandle[] getters;
+	private final EntityBinder<T> binder;
+	/** 单列主键的写访问器，用于回写生成的主键 */
+	private final FieldAccessor primaryKeyAccessor;
+	private final Class<?> primaryKeyType;
+	/** 表名 -> SQL 模板 */
+	private final ConcurrentMap<String, SqlTemplates> templates = new ConcurrentHashMap<String, SqlTemplates>();
+
+	private EntityMeta(Class<T> entityClass) {
+		this.entityClass = entityClass;
+		Mapper classMapper = entityClass.getAnnotation(Mapper.class);
+		this.tableName = classMapper != null && StringUtils.isNotBlank(classMapper.tableName()) ? classMapper.tableName().trim() : null;
+		String[] pks = classMapper == null ? new String[0] : classMapper.primaryKey();
+
+		List<Field> fields = new ArrayList<Field>();
+		List<String> names = new ArrayList<String>();
+		Class<?> targetClass = entityClass;
+		do {
+			for (Field field : targetClass.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers())) {
+					continue;
+				}
+				Mapper mapper = field.getAnnotation(Mapper.class);
+				String name = field.getName();
+				if (mapper != null && StringUtils.isNotBlank(mapper.name())) {
+					name = mapper.name();
+				}
+				// 父类字段与子类字段映射到同一列时使用父类字段，与 RsMapper 一致
+				int index = names.indexOf(name);
+				if (index >= 0) {
+					fields.remove(index);
+					names.remove(index);
+				}
+				fields.add(field);
+				names.add(name);
+			}
+			targetClass = targetClass.getSuperclass();
+		} while (targetClass != null && targetClass != Object.class);
+		for (int i = fields.size() - 1; i >= 0; i--) {
+			Mapper mapper = fields.get(i).getAnnotation(Mapper.class);
+			if (mapper != null && mapper.ignore() || Modifier.isTransient(fields.get(i).getModifiers())) {
+				fields.remove(i);
+				names.remove(i);
+			}
+		}
+
+		this.binder = MapperHelper.getBinder(entityClass);
+		if (binder != null) {
+			this.columns = binder.insertColumns();
+			this.getters = null;
+		} else {
+			this.columns = names.toArray(new String[names.size()]);
+			this.getters = new MethodHandle[fields.size()];
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			for (int i = 0; i < fields.size(); i++) {
+				Field field = fields.get(i);
+				try {
+					field.setAccessible(true);
+					getters[i] = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+				} catch (IllegalAccessException | RuntimeException e) {
+					throw new IllegalStateException("Can not read field " + field + " of class: " + entityClass.getName(), e);
+				}
+			}
+		}
+
+		List<String> pkColumns = new ArrayList<String>();
+		List<Integer> pkIndexes = new ArrayList<Integer>();
+		this.updateColumns = new BitSet(columns.length);
+		for (int i = 0; i < columns.length; i++) {
+			if (pks.length > 0 && StringUtils.contain(pks, columns[i])) {
+				pkColumns.add(columns[i]);
+				pkIndexes.add(i);
+			} else {
+				updateColumns.set(i);
+			}
+		}
+		this.primaryKeyColumns = pkColumns.toArray(new String[pkColumns.size()]);
+		this.primaryKeyIndexes = new int[pkIndexes.size()];
+		for (int i = 0; i < primaryKeyIndexes.length; i++) {
+			primaryKeyIndexes[i] = pkIndexes.get(i);
+		}
+		if (primaryKeyColumns.length == 1 && names.contains(primaryKeyColumns[0])) {
+			Field pkField = fields.get(names.indexOf(primaryKeyColumns[0]));
+			this.primaryKeyAccessor = FieldAccessor.forField(entityClass, pkField);
+			this.primaryKeyType = ClassUtils.resolvePrimitiveIfNecessary(pkField.getType());
+		} else {
+			this.primaryKeyAccessor = null;
+			this.primaryKeyType = null;
+		}
+	}
+
+	/**
+	 * @param <T> 实体类型
+	 * @param clazz 实体类
+	 * @return 实体元数据，每个类只创建一次
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> EntityMeta<T> forClass(Class<T> clazz) {
+		EntityMeta<T> meta = (EntityMeta<T>) cache.get(clazz);
+		if (meta == null) {
+			meta = new EntityMeta<T>(clazz);
+			cache.put(clazz, meta);
+		}
+		return meta;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <T> EntityMeta<T> forEntity(T entity) {
+		return (EntityMeta<T>) forClass(entity.getClass());
+	}
+
+	/**
+	 * @param defaultTableName Mapper#tableName 为空时使用的表名
+	 * @return 表名
+	 */
+	public String getTableName(String defaultTableName) {
+		return tableName == null ? defaultTableName : tableName;
+	}
+
+	/**
+	 * @return 所有未被忽略的列
+	 */
+	public String[] getColumns() {
+		return columns;
+	}
+
+	public String[] getPrimaryKeyColumns() {
+		return primaryKeyColumns;
+	}
+
+	/**
+	 * @param entity 实体对象
+	 * @return 与 {@link #getColumns()} 顺序一致的值
+	 */
+	public Object[] getValues(T entity) {
+		if (binder != null) {
+			return binder.insertValues(entity);
+		}
+		Object[] values = new Object[getters.length];
+		try {
+			for (int i = 0; i < getters.length; i++) {
+				values[i] = (Object) getters[i].invokeExact((Object) entity);
+			}
+		} catch (Throwable e) {
+			throw new IllegalStateException("Can not read fields of class: " + entityClass.getName(), e);
+		}
+		return values;
+	}
+
+	/**
+	 * @param entity 实体对象
+	 * @return 与 {@link #getPrimaryKeyColumns()} 顺序一致的主键值
+	 */
+	public Object[] getPrimaryKeyValues(T entity) {
+		checkPrimaryKey();
+		if (binder != null) {
+			return binder.primaryKeyValues(entity);
+		}
+		Object[] values = new Object[primaryKeyIndexes.length];
+		try {
+			for (int i = 0; i < primaryKeyIndexes.length; i++) {
+				values[i] = (Object) getters[primaryKeyIndexes[i]].invokeExact((Object) entity);
+			}
+		} catch (Throwable e) {
+			throw new IllegalStateException("Can not read fields of class: " + entityClass.getName(), e);
+		}
+		return values;
+	}
+
+	/**
+	 * @param values {@link #getValues(Object)} 的结果
+	 * @return 单列主键的值
+	 */
+	public Object getPrimaryKeyValue(Object[] values) {
+		checkSinglePrimaryKey();
+		return values[primaryKeyIndexes[0]];
+	}
+
+	/**
+	 * 把数据库生成的主键写入实体的主键字段，数值按字段类型转换．只支持单列主键．
+	 * @param entity 实体对象
+	 * @param key 生成的主键
+	 */
+	public void setGeneratedKey(T entity, Number key) {
+		writeKey(entity, key);
+	}
+
+	/**
+	 * @return true: 单列主键，可以写入生成的主键
+	 */
+	public boolean isKeyAssignable() {
+		return primaryKeyAccessor != null;
+	}
+
+	/**
+	 * 把主键生成器生成的主键写入实体，同时更新 values 中的主键值．
+	 * @param entity 实体对象
+	 * @param values {@link #getValues(Object)} 的结果
+	 * @param key 生成的主键
+	 */
+	public void assignKey(T entity, Object[] values, Number key) {
+		values[primaryKeyIndexes[0]] = writeKey(entity, key);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object writeKey(T entity, Number key) {
+		checkSinglePrimaryKey();
+		Object value = key;
+		if (primaryKeyType == String.class) {
+			value = String.valueOf(key);
+		} else if (Number.class.isAssignableFrom(primaryKeyType)) {
+			value = NumberUtils.convertNumberToTargetClass(key, (Class<? extends Number>) primaryKeyType);
+		}
+		try {
+			primaryKeyAccessor.set(entity, value);
+		} catch (Throwable e) {
+			throw new IllegalStateException("Can not set primary key of class: " + entityClass.getName(), e);
+		}
+		return value;
+	}
+
+	/**
+	 * @param values {@link #getValues(Object)} 的结果
+	 * @return 值不为 null 的列
+	 */
+	public BitSet nonNullColumns(Object[] values) {
+		BitSet set = new BitSet(values.length);
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				set.set(i);
+			}
+		}
+		return set;
+	}
+
+	/**
+	 * 与快照相比发生变化的非主键列．实体没有快照时返回 null
+	 * @param entity 实体对象
+	 * @param values {@link #getValues(Object)} 的结果
+	 * @return 变化的列
+	 */
+	public BitSet dirtyColumns(T entity, Object[] values) {
+		if (!(entity instanceof TrackedEntity)) {
+			return null;
+		}
+		Object[] snapshot = ((TrackedEntity) entity).getSnapshot();
+		if (snapshot == null || snapshot.length != values.length) {
+			return null;
+		}
+		BitSet set = new BitSet(values.length);
+		for (int i = updateColumns.nextSetBit(0); i >= 0; i = updateColumns.nextSetBit(i + 1)) {
+			if (!Objects.deepEquals(snapshot[i], values[i])) {
+				set.set(i);
+			}
+		}
+		return set;
+	}
+
+	/**
+	 * @return 所有列
+	 */
+	public BitSet allColumns() {
+		BitSet set = new BitSet(columns.length);
+		set.set(0, columns.length);
+		return set;
+	}
+
+	/**
+	 * @param values {@link #getValues(Object)} 的结果
+	 * @param selected 选中的列
+	 * @return 选中列的值
+	 */
+	public static Object[] select(Object[] values, BitSet selected) {
+		Object[] result = new Object[selected.cardinality()];
+		int j = 0;
+		for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+			result[j++] = values[i];
+		}
+		return result;
+	}
+
+	/**
+	 * update 语句的参数：选中的非主键列的值，后面紧跟主键值．
+	 * @param values {@link #getValues(Object)} 的结果
+	 * @param selected 选中的列，主键列被忽略
+	 * @return update 参数
+	 */
+	public Object[] updateArgs(Object[] values, BitSet selected) {
+		BitSet set = (BitSet) selected.clone();
+		set.and(updateColumns);
+		Object[] result = new Object[set.cardinality() + primaryKeyIndexes.length];
+		int j = 0;
+		for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+			result[j++] = values[i];
+		}
+		for (int index : primaryKeyIndexes) {
+			result[j++] = values[index];
+		}
+		return result;
+	}
+
+	/**
+	 * @param table 表名
+	 * @param selected 写入的列
+	 * @return insert 语句，按表名和列组合缓存
+	 */
+	public String getInsertSql(String table, BitSet selected) {
+		SqlTemplates t = getTemplates(table);
+		String sql = t.insertSqls.get(selected);
+		if (sql == null) {
+			sql = Insert.table(table).columns(names(selected));
+			t.insertSqls.put((BitSet) selected.clone(), sql);
+		}
+		return sql;
+	}
+
+	/**
+	 * @param table 表名
+	 * @param selected 写入的列
+	 * @param rows 一条语句插入的行数
+	 * @return 多行 insert 语句，按表名、列组合和行数缓存
+	 */
+	public String getInsertSql(String table, BitSet selected, int rows) {
+		if (rows == 1) {
+			return getInsertSql(table, selected);
+		}
+		SqlTemplates t = getTemplates(table);
+		Map<Integer, String> sqls = t.multiInsertSqls.get(selected);
+		if (sqls == null) {
+			sqls = new ConcurrentHashMap<Integer, String>();
+			t.multiInsertSqls.put((BitSet) selected.clone(), sqls);
+		}
+		String sql = sqls.get(rows);
+		if (sql == null) {
+			sql = Insert.table(table).columns(names(selected), rows);
+			sqls.put(rows, sql);
+		}
+		return sql;
+	}
+
+	/**
+	 * @param table 表名
+	 * @param selected 更新的列，主键列被忽略
+	 * @return update ... where pk = ? 语句，按表名和列组合缓存
+	 */
+	public String getUpdateSql(String table, BitSet selected) {
+		checkPrimaryKey();
+		SqlTemplates t = getTemplates(table);
+		String sql = t.updateSqls.get(selected);
+		if (sql == null) {
+			BitSet set = (BitSet) selected.clone();
+			set.and(updateColumns);
+			sql = Update.table(table).setColumns(names(set)).whereColumns(primaryKeyColumns);
+			t.updateSqls.put((BitSet) selected.clone(), sql);
+		}
+		return sql;
+	}
+
+	/**
+	 * @param table 表名
+	 * @param dialect 数据库方言
+	 * @return 写入所有列的 upsert 语句，参数与 {@link #getValues(Object)} 一致
+	 */
+	public String getUpsertSql(String table, Dialect dialect) {
+		checkPrimaryKey();
+		SqlTemplates t = getTemplates(table);
+		String sql = t.upsertSqls.get(dialect);
+		if (sql == null) {
+			sql = dialect.upsert(table, columns, primaryKeyColumns);
+			t.upsertSqls.put(dialect, sql);
+		}
+		return sql;
+	}
+
+	/**
+	 * @param table 表名
+	 * @return delete ... where pk = ? 语句
+	 */
+	public String getDeleteSql(String table) {
+		checkPrimaryKey();
+		SqlTemplates t = getTemplates(table);
+		if (t.deleteSql == null) {
+			t.deleteSql = Delete.table(table).whereColumns(primaryKeyColumns);
+		}
+		return t.deleteSql;
+	}
+
+	public Class<T> getEntityClass() {
+		return entityClass;
+	}
+
+	private SqlTemplates getTemplates(String table) {
+		SqlTemplates t = templates.get(table);
+		if (t == null) {
+			t = new SqlTemplates();
+			SqlTemplates existing = templates.putIfAbsent(table, t);
+			if (existing != null) {
+				t = existing;
+			}
+		}
+		return t;
+	}
+
+	private List<String> names(BitSet selected) {
+		List<String> names = new ArrayList<String>(selected.cardinality());
+		for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+			names.add(columns[i]);
+		}
+		return names;
+	}
+
+	private void checkPrimaryKey() {
+		if (primaryKeyColumns.length < 1) {
+			throw new IllegalStateException("Mapper#primaryKey annotation not found at class: " + entityClass);
+		}
+	}
+
+	private void checkSinglePrimaryKey() {
+		if (primaryKeyColumns.length != 1 || primaryKeyAccessor == null) {
+			throw new IllegalStateException("Mapper#primaryKey annotation with one column not found at class: " + entityClass);
+		}
+	}
+
+	private static class SqlTemplates {
+		final Map<BitSet, String> insertSqls = new ConcurrentHashMap<BitSet, String>();
+		final Map<BitSet, Map<Integer, String>> multiInsertSqls = new ConcurrentHashMap<BitSet, Map<Integer, String>>();
+		final Map<BitSet, String> updateSqls = new ConcurrentHashMap<BitSet, String>();
+		final Map<Dialect, String> upsertSqls = new ConcurrentHashMap<Dialect, String>();
+		volatile String deleteSql;
+	}
+}
@@ -0,0 +1,27 @@
+package com.aswishes.spring.mapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 按枚举名称转换．如：列值 "ENABLED" 转换为 Status.ENABLED
+ * @author lizhou
+ */
+public class EnumNameConverter implements EnumTypeConverter {
+
+	@Override
+	public <E extends Enum<E>> E convertEnum(ResultSet rs, int index, Class<E> enumType) throws SQLException {
+		String name = rs.getString(index);
+		if (name == null) {
+			return null;
+		}
+		return Enum.valueOf(enumType, name.trim());
+	}
+
+	/**
+	 * 不知道目标枚举类型，原样返回．
+	 */
+	public Object convert(Object v) {
+		return v;
+	}
+}
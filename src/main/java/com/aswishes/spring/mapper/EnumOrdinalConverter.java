@@ -0,0 +1,39 @@
+package com.aswishes.spring.mapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按枚举序号转换．如：列值 0 转换为枚举的第一个常量
+ * @author lizhou
+ */
+public class EnumOrdinalConverter implements EnumTypeConverter {
+	private static Map<Class<?>, Object[]> constantsCache = new ConcurrentHashMap<Class<?>, Object[]>();
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <E extends Enum<E>> E convertEnum(ResultSet rs, int index, Class<E> enumType) throws SQLException {
+		int ordinal = rs.getInt(index);
+		if (rs.wasNull()) {
+			return null;
+		}
+		Object[] constants = constantsCache.get(enumType);
+		if (constants == null) {
+			constants = enumType.getEnumConstants();
+			constantsCache.put(enumType, constants);
+		}
+		if (ordinal < 0 || ordinal >= constants.length) {
+			throw new SQLException("No enum constant " + enumType.getName() + " with ordinal " + ordinal);
+		}
+		return (E) constants[ordinal];
+	}
+
+	/**
+	 * 不知道目标枚举类型，原样返回．
+	 */
+	public Object convert(Object v) {
+		return v;
+	}
+}
@@ -0,0 +1,21 @@
+package com.aswishes.spring.mapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 转换为枚举的类型转换器．字段类型为枚举时，映射器直接调用此方法，不经过 {@link #convert(Object)}．
+ * @author lizhou
+ */
+public interface EnumTypeConverter extends TypeConverter {
+
+	/**
+	 * @param <E> 枚举类型
+	 * @param rs 结果集
+	 * @param index 列序号，从 1 开始
+	 * @param enumType 字段的枚举类型
+	 * @return 转换结果，列值为 null 时返回 null
+	 * @throws SQLException 读取列值失败
+	 */
+	public <E extends Enum<E>> E convertEnum(ResultSet rs, int index, Class<E> enumType) throws SQLException;
+}
@@ -0,0 +1,139 @@
+package com.aswishes.spring.mapper;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * 实体字段的写访问器．setter 方法只在创建时查找一次，并绑定为 {@link MethodHandle}，
+ * 没有 setter 时直接写字段．基本类型字段可以通过 setLong/setInt 等方法写入，不产生装箱．
+ * @author lizhou
+ */
+class FieldAccessor {
+	private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+	private final Field field;
+	private final String setterName;
+	/** (Object, Object)void, 字段不可写时为 null */
+	private final MethodHandle setter;
+	/** 基本类型字段使用: (Object, long/int/...)void, 避免装箱 */
+	private final MethodHandle primitiveSetter;
+
+	private FieldAccessor(Field field, String setterName, MethodHandle setter, MethodHandle primitiveSetter) {
+		this.field = field;
+		this.setterName = setterName;
+		this.setter = setter;
+		this.primitiveSetter = primitiveSetter;
+	}
+
+	/**
+	 * @param clazz 实体类，从该类开始向上查找 setter 方法
+	 * @param field 实体字段
+	 * @return 字段访问器．final 字段且没有 setter 时不可写
+	 * @throws IllegalStateException setter 或字段无法访问
+	 */
+	static FieldAccessor forField(Class<?> clazz, Field field) {
+		String setterName = getSetterName(field.getName());
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		MethodHandle handle = null;
+		Class<?> type = field.getType();
+		try {
+			Method method = getDeclaredMethod(clazz, setterName, type);
+			if (method != null) {
+				method.setAccessible(true);
+				handle = lookup.unreflect(method);
+			} else if (!Modifier.isFinal(field.getModifiers()) && !Modifier.isStatic(field.getModifiers())) {
+				field.setAccessible(true);
+				handle = lookup.unreflectSetter(field);
+			}
+			if (handle == null) {
+				return new FieldAccessor(field, setterName, null, null);
+			}
+			MethodHandle primitiveHandle = null;
+			if (type.isPrimitive()) {
+				primitiveHandle = handle.asType(MethodType.methodType(void.class, Object.class, type));
+			}
+			return new FieldAccessor(field, setterName, handle.asType(SETTER_TYPE), primitiveHandle);
+		} catch (IllegalAccessException | RuntimeException e) {
+			throw new IllegalStateException("Can not write field " + field.getName() + " of class: " + clazz.getName()
+					+ ", setter: " + setterName, e);
+		}
+	}
+
+	void set(Object target, Object value) throws Throwable {
+		if (setter == null) {
+			throw new NoSuchMethodException(field.getDeclaringClass().getName() + "." + setterName);
+		}
+		setter.invokeExact(target, value);
+	}
+
+	void setLong(Object target, long value) throws Throwable {
+		checkPrimitive();
+		primitiveSetter.invokeExact(target, value);
+	}
+
+	void setInt(Object target, int value) throws Throwable {
+		checkPrimitive();
+		primitiveSetter.invokeExact(target, value);
+	}
+
+	void setShort(Object target, short value) throws Throwable {
+		checkPrimitive();
+		primitiveSetter.invokeExact(target, value);
+	}
+
+	void setByte(Object target, byte value) throws Throwable {
+		checkPrimitive();
+		primitiveSetter.invokeExact(target, value);
+	}
+
+	void setDouble(Object target, double value) throws Throwable {
+		checkPrimitive();
+		primitiveSetter.invokeExact(target, value);
+	}
+
+	void setFloat(Object target, float value) throws Throwable {
+		checkPrimitive();
+		primitiveSetter.invokeExact(target, value);
+	}
+
+	void setBoolean(Object target, boolean value) throws Throwable {
+		checkPrimitive();
+		primitiveSetter.invokeExact(target, value);
+	}
+
+	private void checkPrimitive() throws NoSuchMethodException {
+		if (primitiveSetter == null) {
+			throw new NoSuchMethodException(field.getDeclaringClass().getName() + "." + setterName);
+		}
+	}
+
+	boolean isWritable() {
+		return setter != null;
+	}
+
+	String getSetterName() {
+		return setterName;
+	}
+
+	private static String getSetterName(String fieldName) {
+		char[] arr = fieldName.toCharArray();
+		arr[0] = Character.toUpperCase(arr[0]);
+		return "set" + new String(arr);
+	}
+
+	private static Method getDeclaredMethod(Class<?> clazz, String name, Class<?>...parameterTypes) {
+		Class<?> targetClass = clazz;
+		do {
+			try {
+				return targetClass.getDeclaredMethod(name, parameterTypes);
+			} catch (NoSuchMethodException e) {
+				targetClass = targetClass.getSuperclass();
+			}
+		} while (targetClass != null && targetClass != Object.class);
+		return null;
+	}
+}
@@ -0,0 +1,138 @@
+package com.aswishes.spring.mapper;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * 注解处理器生成的 RowMapper 的基类．生成类按字段顺序读取列，列序号按结果集形状计算一次后复用．
+ * 生成类的命名规则见 {@link MapperHelper#getGeneratedClassName(Class)}．
+ * @author lizhou
+ * @param <T> 实体类型
+ */
+public abstract class GeneratedRowMapper<T> implements RowMapper<T>, EntityBinder<T> {
+	/** 每个实体类按结果集形状(列标签序列)缓存的列序号，最多 {@link MapperHelper#MAX_PLANS} 种形状 */
+	private static Map<Class<?>, Map<String, int[]>> indexCache = new ConcurrentHashMap<Class<?>, Map<String, int[]>>();
+
+	private final Class<T> entityClass;
+	private final String[] columns;
+	private final String[] insertColumns;
+	private final String[] updateColumns;
+	private final String[] primaryKeyColumns;
+	/** 实体实现了 {@link TrackedEntity} */
+	private final boolean tracked;
+	private volatile ResultSetIndexes current;
+
+	/**
+	 * @param entityClass 实体类
+	 * @param columns 映射的列，顺序与生成的 {@link #mapRow(ResultSet, int[])} 中的字段顺序一致
+	 * @param insertColumns 未被忽略的列
+	 * @param updateColumns 未被忽略的非主键列
+	 * @param primaryKeyColumns 主键列
+	 */
+	protected GeneratedRowMapper(Class<T> entityClass, String[] columns, String[] insertColumns,
+			String[] updateColumns, String[] primaryKeyColumns) {
+		this.entityClass = entityClass;
+		this.columns = columns;
+		this.insertColumns = insertColumns;
+		this.updateColumns = updateColumns;
+		this.primaryKeyColumns = primaryKeyColumns;
+		this.tracked = TrackedEntity.class.isAssignableFrom(entityClass);
+	}
+
+	@Override
+	public T mapRow(ResultSet rs, int rowNum) throws SQLException {
+		T entity = mapRow(rs, getColumnIndexes(rs, rowNum));
+		if (tracked) {
+			// 存在生成类时 EntityMeta#getValues 即为 insertValues
+			((TrackedEntity) entity).setSnapshot(insertValues(entity));
+		}
+		return entity;
+	}
+
+	/**
+	 * @param rs 结果集
+	 * @param columnIndexes 每个映射列在结果集中的序号，结果集中不存在的列为 0
+	 * @return 实体对象
+	 * @throws SQLException 读取列值失败
+	 */
+	protected abstract T mapRow(ResultSet rs, int[] columnIndexes) throws SQLException;
+
+	private int[] getColumnIndexes(ResultSet rs, int rowNum) throws SQLException {
+		ResultSetIndexes last = current;
+		if (last != null && last.rs == rs && rowNum > 0) {
+			return last.indexes;
+		}
+		ResultSetMetaData metaData = rs.getMetaData();
+		int columnCount = metaData.getColumnCount();
+		StringBuilder shape = new StringBuilder(columnCount * 16);
+		String[] labels = new String[columnCount];
+		for (int i = 1; i <= columnCount; i++) {
+			labels[i - 1] = JdbcUtils.lookupColumnName(metaData, i);
+			shape.append(labels[i - 1]).append(',');
+		}
+		Map<String, int[]> shapes = indexCache.get(entityClass);
+		if (shapes == null) {
+			shapes = new ConcurrentHashMap<String, int[]>();
+			Map<String, int[]> existing = indexCache.putIfAbsent(entityClass, shapes);
+			if (existing != null) {
+				shapes = existing;
+			}
+		}
+		String key = shape.toString();
+		int[] indexes = shapes.get(key);
+		if (indexes == null) {
+			indexes = new int[columns.length];
+			for (int i = 0; i < columns.length; i++) {
+				for (int j = 0; j < labels.length; j++) {
+					if (columns[i].equals(labels[j])) {
+						indexes[i] = j + 1;
+						break;
+					}
+				}
+			}
+			if (shapes.size() < MapperHelper.MAX_PLANS) {
+				shapes.put(key, indexes);
+			}
+		}
+		current = new ResultSetIndexes(rs, indexes);
+		return indexes;
+	}
+
+	@Override
+	public String[] insertColumns() {
+		return insertColumns;
+	}
+
+	@Override
+	public String[] updateColumns() {
+		return updateColumns;
+	}
+
+	@Override
+	public String[] primaryKeyColumns() {
+		return primaryKeyColumns;
+	}
+
+	public Class<T> getEntityClass() {
+		return entityClass;
+	}
+
+	public Mapper getMapper() {
+		return entityClass.getAnnotation(Mapper.class);
+	}
+
+	private static class ResultSetIndexes {
+		final ResultSet rs;
+		final int[] indexes;
+		ResultSetIndexes(ResultSet rs, int[] indexes) {
+			this.rs = rs;
+			this.indexes = indexes;
+		}
+	}
+}
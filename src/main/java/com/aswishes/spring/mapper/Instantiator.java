@@ -0,0 +1,193 @@
+package com.aswishes.spring.mapper;
+
+import java.beans.ConstructorProperties;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.aswishes.spring.StringUtils;
+
+/**
+ * 结果对象的创建器．构造器或工厂方法在创建时解析一次，并绑定为 {@link MethodHandle}．
+ * 优先使用 {@link MapperCreator} 标注的构造器或静态工厂方法，其次是无参构造器，最后是唯一的非 private 有参构造器．
+ * 有参构造器的参数按名称对应列：参数上的 {@link Mapper#name()}、{@link ConstructorProperties} 或编译时使用 -parameters 保留的参数名，
+ * 无法确定参数名时不能使用该构造器．
+ * @author lizhou
+ */
+class Instantiator {
+	private static final MethodType NO_ARGS_TYPE = MethodType.methodType(Object.class);
+	private static final MethodType ARGS_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+	private final Class<?> clazz;
+	/** ()Object 或 (Object[])Object, 无法创建时为 null */
+	private final MethodHandle handle;
+	private final CreatorParameter[] parameters;
+	private final String error;
+
+	private Instantiator(Class<?> clazz, MethodHandle handle, CreatorParameter[] parameters, String error) {
+		this.clazz = clazz;
+		this.handle = handle;
+		this.parameters = parameters;
+		this.error = error;
+	}
+
+	static Instantiator forClass(Class<?> clazz) {
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		try {
+			Executable creator = findCreator(clazz);
+			if (creator == null) {
+				return new Instantiator(clazz, null, new CreatorParameter[0], "No usable constructor found for class: " + clazz.getName()
+						+ ", add a constructor without parameters, a non-private constructor or a @MapperCreator");
+			}
+			creator.setAccessible(true);
+			MethodHandle handle = creator instanceof Constructor
+					? lookup.unreflectConstructor((Constructor<?>) creator)
+					: lookup.unreflect((Method) creator);
+			int count = creator.getParameterCount();
+			if (count == 0) {
+				return new Instantiator(clazz, handle.asType(NO_ARGS_TYPE), new CreatorParameter[0], null);
+			}
+			CreatorParameter[] parameters = getParameters(clazz, creator);
+			handle = handle.asSpreader(Object[].class, count).asType(ARGS_TYPE);
+			return new Instantiator(clazz, handle, parameters, null);
+		} catch (IllegalAccessException | RuntimeException e) {
+			return new Instantiator(clazz, null, new CreatorParameter[0], "Can not use constructor of class: " + clazz.getName() + ", " + e.getMessage());
+		}
+	}
+
+	private static Executable findCreator(Class<?> clazz) {
+		for (Constructor<?> constructor : clazz.getDeclaredConstructors()) {
+			if (constructor.isAnnotationPresent(MapperCreator.class)) {
+				return constructor;
+			}
+		}
+		for (Method method : clazz.getDeclaredMethods()) {
+			if (method.isAnnotationPresent(MapperCreator.class)) {
+				if (!Modifier.isStatic(method.getModifiers()) || !clazz.isAssignableFrom(method.getReturnType())) {
+					throw new IllegalStateException("@MapperCreator method must be static and return " + clazz.getName());
+				}
+				return method;
+			}
+		}
+		Constructor<?>[] constructors = clazz.getDeclaredConstructors();
+		for (Constructor<?> constructor : constructors) {
+			if (constructor.getParameterCount() == 0) {
+				return constructor;
+			}
+		}
+		if (constructors.length == 1 && !Modifier.isPrivate(constructors[0].getModifiers())) {
+			return constructors[0];
+		}
+		return null;
+	}
+
+	private static CreatorParameter[] getParameters(Class<?> clazz, Executable creator) {
+		Parameter[] params = creator.getParameters();
+		String[] names = new String[params.length];
+		ConstructorProperties properties = creator.getAnnotation(ConstructorProperties.class);
+		CreatorParameter[] result = new CreatorParameter[params.length];
+		for (int i = 0; i < params.length; i++) {
+			Parameter param = params[i];
+			Field field = null;
+			if (properties != null && properties.value().length == params.length) {
+				names[i] = properties.value()[i];
+			} else if (param.isNamePresent()) {
+				names[i] = param.getName();
+			}
+			if (names[i] != null) {
+				field = findField(clazz, names[i]);
+			}
+			Mapper mapper = param.getAnnotation(Mapper.class);
+			if (mapper == null && field != null) {
+				mapper = field.getAnnotation(Mapper.class);
+			}
+			String column = names[i];
+			Class<? extends TypeConverter> typeConvert = null;
+			if (mapper != null) {
+				if (StringUtils.isNotBlank(mapper.name())) {
+					column = mapper.name();
+				}
+				typeConvert = mapper.typeConvert();
+			}
+			if (column == null) {
+				throw new IllegalStateException("Can not resolve column of parameter " + i + " of " + creator
+						+ ", use @Mapper(name), @ConstructorProperties or compile with -parameters");
+			}
+			result[i] = new CreatorParameter(column, param.getType(), MapperHelper.getConverter(typeConvert));
+		}
+		return result;
+	}
+
+	private static Field findField(Class<?> clazz, String name) {
+		Class<?> targetClass = clazz;
+		do {
+			for (Field field : targetClass.getDeclaredFields()) {
+				if (field.getName().equals(name)) {
+					return field;
+				}
+			}
+			targetClass = targetClass.getSuperclass();
+		} while (targetClass != null && targetClass != Object.class);
+		return null;
+	}
+
+	/**
+	 * @return 构造参数对应的列，无参构造时为空数组
+	 */
+	CreatorParameter[] getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * @param rs 结果集
+	 * @param argIndexes 每个构造参数在结果集中的列序号，不存在的列为 0
+	 * @return 结果对象
+	 * @throws SQLException 读取列值或创建对象失败
+	 */
+	Object newInstance(ResultSet rs, int[] argIndexes) throws SQLException {
+		if (handle == null) {
+			throw new SQLException("construct result object error. " + error);
+		}
+		try {
+			if (parameters.length == 0) {
+				return (Object) handle.invokeExact();
+			}
+			Object[] args = new Object[parameters.length];
+			for (int i = 0; i < parameters.length; i++) {
+				CreatorParameter parameter = parameters[i];
+				Object value = argIndexes[i] > 0 ? parameter.readType.read(rs, argIndexes[i], parameter.converter, parameter.type) : null;
+				args[i] = value == null ? parameter.defaultValue : value;
+			}
+			return (Object) handle.invokeExact(args);
+		} catch (SQLException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new SQLException("construct result object error: " + clazz.getName(), e);
+		}
+	}
+
+	static class CreatorParameter {
+		final String column;
+		final Class<?> type;
+		final TypeConverter converter;
+		final ReadType readType;
+		/** 基本类型参数在列不存在或为 NULL 时使用的默认值 */
+		final Object defaultValue;
+		CreatorParameter(String column, Class<?> type, TypeConverter converter) {
+			this.column = column;
+			this.type = type;
+			this.converter = converter;
+			this.readType = ReadType.of(type, converter);
+			this.defaultValue = type.isPrimitive() ? Array.get(Array.newInstance(type, 1), 0) : null;
+		}
+	}
+}
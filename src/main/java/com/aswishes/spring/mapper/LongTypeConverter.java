@@ -0,0 +1,20 @@
+package com.aswishes.spring.mapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 转换为 long 的类型转换器．字段类型为 long/Long 时，映射器直接调用此方法，不经过 {@link #convert(Object)}．
+ * 实现需要读取 index 列，字段为包装类型时，读取后 {@link ResultSet#wasNull()} 为 true 则字段写入 null．
+ * @author lizhou
+ */
+public interface LongTypeConverter extends TypeConverter {
+
+	/**
+	 * @param rs 结果集
+	 * @param index 列序号，从 1 开始
+	 * @return 转换结果
+	 * @throws SQLException 读取列值失败
+	 */
+	public long convertLong(ResultSet rs, int index) throws SQLException;
+}
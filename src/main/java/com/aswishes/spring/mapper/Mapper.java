@@ -7,10 +7,11 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
- * RowMapper annotation writen
+ * RowMapper annotation writen.
+ * Used on parameters of a {@link MapperCreator} constructor or factory method, only name and typeConvert are read.
  * @author lizhou
  */
-@Target({ElementType.TYPE, ElementType.FIELD})
+@Target({ElementType.TYPE, ElementType.FIELD, ElementType.PARAMETER})
 @Retention(value = RetentionPolicy.RUNTIME)
 @Documented
 public @interface Mapper {
@@ -37,6 +38,8 @@ public @interface Mapper {
 
 	/**
 	 * database data type and java data type convert interface.
+	 * {@link BooleanTypeConverter}, {@link LongTypeConverter}, {@link IntTypeConverter} and {@link EnumTypeConverter}
+	 * read the column directly without boxing.
 	 * @return custom convert menthod
 	 */
 	Class<? extends TypeConverter> typeConvert() default DefaultConverter.class;
@@ -0,0 +1,21 @@
+package com.aswishes.spring.mapper;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 指定创建结果对象使用的构造器或静态工厂方法，用于不可变对象．
+ * 参数对应的列名依次取自：参数上的 {@link Mapper#name()}，构造器上的 {@link java.beans.ConstructorProperties}，
+ * 编译时保留的参数名(javac -parameters)．参数名与字段名相同时使用字段映射的列名．
+ * 以上都无法确定参数名时映射失败，抛出 IllegalStateException，不按字段顺序猜测．
+ * @author lizhou
+ */
+@Target({ElementType.CONSTRUCTOR, ElementType.METHOD})
+@Retention(value = RetentionPolicy.RUNTIME)
+@Documented
+public @interface MapperCreator {
+
+}
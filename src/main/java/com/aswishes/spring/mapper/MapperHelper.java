@@ -1,34 +1,49 @@
 package com.aswishes.spring.mapper;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.util.ConcurrentReferenceHashMap;
 
 import com.aswishes.spring.StringUtils;
+import com.aswishes.spring.mapper.Instantiator.CreatorParameter;
 
 public class MapperHelper {
 	private static Map<Class<?>, Map<String, MapperField>> cache = new ConcurrentHashMap<Class<?>, Map<String, MapperField>>();
 	private static Map<Class<?>, TypeConverter> converterCache = new ConcurrentHashMap<Class<?>, TypeConverter>();
+	/** 每个类最多缓存的结果集形状数，超过后新的形状不再缓存，只在同一结果集的各行之间复用 */
+	static final int MAX_PLANS = 64;
+	/** 每个类按结果集形状(列标签序列)缓存的绑定计划 */
+	private static Map<Class<?>, Map<String, BindingPlan>> planCache = new ConcurrentHashMap<Class<?>, Map<String, BindingPlan>>();
+	private static Map<Class<?>, Instantiator> instantiatorCache = new ConcurrentHashMap<Class<?>, Instantiator>();
 	private static final Map<Class<?>, Field[]> declaredFieldsCache = new ConcurrentReferenceHashMap<>(256);
+	/** 注解处理器生成的映射类的构造器．没有生成类时缓存 NO_GENERATED */
+	private static final Map<Class<?>, Object> generatedCache = new ConcurrentHashMap<Class<?>, Object>();
+	private static final Object NO_GENERATED = new Object();
 
 	/**
-	 * 构建 Mapper 对象
+	 * 构建 Mapper 对象．如果存在注解处理器生成的映射类，优先使用生成类．
 	 * @param <T> the class of the object
 	 * @param clazz the class which will be convert to RowMapper object.
 	 * @return RowMapper object
 	 */
 	public static <T> RowMapper<T> getMapper(Class<T> clazz) {
+		GeneratedRowMapper<T> generated = getGenerated(clazz);
+		if (generated != null) {
+			return generated;
+		}
 		Map<String, MapperField> fmap = cache.get(clazz);
 		if (fmap != null) {
 			return new RsMapper<T>(clazz, fmap);
@@ -53,10 +68,7 @@ public class MapperHelper {
 					}
 					typeConvert = mapper.typeConvert();
 				}
-				if (field.isAccessible() == false) {
-					field.setAccessible(true);
-				}
-				fmap.put(columnName, new MapperField(field, typeConvert));
+				fmap.put(columnName, new MapperField(field, getConverter(typeConvert), FieldAccessor.forField(clazz, field)));
 			}
 			targetClass = targetClass.getSuperclass();
 		} while (targetClass != null && targetClass != Object.class);
@@ -64,78 +76,348 @@ public class MapperHelper {
 		return new RsMapper<T>(clazz, fmap);
 	}
 
+	/**
+	 * 获取注解处理器生成的参数绑定器．
+	 * @param <T> the class of the object
+	 * @param clazz entity class
+	 * @return 生成的绑定器，没有生成类时返回 null
+	 */
+	public static <T> EntityBinder<T> getBinder(Class<T> clazz) {
+		return getGenerated(clazz);
+	}
+
+	/**
+	 * 生成类的名称：与实体类同一个包，类名为实体类的二进制名称(内部类的 $ 替换为 _)加 _Mapper 后缀．
+	 * 如：com.example.User 生成 com.example.User_Mapper，com.example.Order$Item 生成 com.example.Order_Item_Mapper
+	 * @param clazz entity class
+	 * @return 生成类的全限定名
+	 */
+	public static String getGeneratedClassName(Class<?> clazz) {
+		String name = clazz.getName();
+		int index = name.lastIndexOf('.');
+		return name.substring(0, index + 1) + name.substring(index + 1).replace('$', '_') + "_Mapper";
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> GeneratedRowMapper<T> getGenerated(Class<T> clazz) {
+		Object constructor = generatedCache.get(clazz);
+		if (constructor == null) {
+			constructor = findGenerated(clazz);
+			generatedCache.put(clazz, constructor);
+		}
+		if (constructor == NO_GENERATED) {
+			return null;
+		}
+		try {
+			return (GeneratedRowMapper<T>) ((Constructor<?>) constructor).newInstance();
+		} catch (Exception e) {
+			throw new IllegalStateException("Can not create generated mapper of class: " + clazz.getName(), e);
+		}
+	}
+
+	private static Object findGenerated(Class<?> clazz) {
+		try {
+			Class<?> generatedClass = Class.forName(getGeneratedClassName(clazz), true, clazz.getClassLoader());
+			if (!GeneratedRowMapper.class.isAssignableFrom(generatedClass)) {
+				return NO_GENERATED;
+			}
+			return generatedClass.getConstructor();
+		} catch (ClassNotFoundException | NoSuchMethodException e) {
+			return NO_GENERATED;
+		}
+	}
+
+	private static Instantiator getInstantiator(Class<?> clazz) {
+		Instantiator instantiator = instantiatorCache.get(clazz);
+		if (instantiator == null) {
+			instantiator = Instantiator.forClass(clazz);
+			instantiatorCache.put(clazz, instantiator);
+		}
+		return instantiator;
+	}
+
+	/**
+	 * 获取类型转换器实例．同一转换器类共享一个实例，默认转换器返回 null．
+	 */
+	static TypeConverter getConverter(Class<? extends TypeConverter> typeConverter) {
+		if (typeConverter == null || DefaultConverter.class.equals(typeConverter)) {
+			return null;
+		}
+		TypeConverter converterObj = converterCache.get(typeConverter);
+		if (converterObj == null) {
+			try {
+				converterObj = typeConverter.getDeclaredConstructor().newInstance();
+			} catch (Exception e) {
+				throw new IllegalStateException("Can not create type converter: " + typeConverter.getName(), e);
+			}
+			converterCache.put(typeConverter, converterObj);
+		}
+		return converterObj;
+	}
+
 	/**
 	 * Construct Mapper Object of given class
 	 */
 	public static class RsMapper<T> implements RowMapper<T> {
 		private Class<T> clazz;
 		private Map<String, MapperField> fieldMap;
+		private Instantiator instantiator;
+		/** 实现了 {@link TrackedEntity} 的类使用，其他类为 null */
+		private EntityMeta<T> trackedMeta;
+		/** 最近一次使用的结果集及其绑定计划，同一结果集的后续行直接复用 */
+		private volatile ResultSetPlan current;
 		public RsMapper(Class<T> clazz, Map<String, MapperField> fieldMap) {
 			this.clazz = clazz;
 			this.fieldMap = fieldMap;
+			this.instantiator = getInstantiator(clazz);
+			this.trackedMeta = TrackedEntity.class.isAssignableFrom(clazz) ? EntityMeta.forClass(clazz) : null;
 		}
 		@Override
 		public T mapRow(ResultSet rs, int rowNum) throws SQLException {
-			T rowObj = null;
-			try {
-				rowObj = clazz.newInstance();
-			} catch (Exception e) {
-				throw new SQLException("construct result object error", e);
+			BindingPlan plan = getPlan(rs, rowNum);
+			T rowObj = clazz.cast(instantiator.newInstance(rs, plan.argIndexes));
+			for (int i = 0; i < plan.fields.length; i++) {
+				setValue(rowObj, plan.fields[i], rs, plan.columnIndexes[i]);
+			}
+			if (trackedMeta != null) {
+				((TrackedEntity) rowObj).setSnapshot(trackedMeta.getValues(rowObj));
+			}
+			return rowObj;
+		}
+		/**
+		 * 获取结果集对应的绑定计划．每个结果集只读取一次元数据，相同形状的结果集共享同一个计划．
+		 */
+		private BindingPlan getPlan(ResultSet rs, int rowNum) throws SQLException {
+			ResultSetPlan last = current;
+			if (last != null && last.rs == rs && rowNum > 0) {
+				return last.plan;
 			}
 			ResultSetMetaData metaData = rs.getMetaData();
 			int columnCount = metaData.getColumnCount();
-			List<String> columnNames = new ArrayList<String>();
+			StringBuilder shape = new StringBuilder(columnCount * 16);
+			String[] labels = new String[columnCount];
 			for (int i = 1; i <= columnCount; i++) {
-				columnNames.add(metaData.getColumnName(i));
+				labels[i - 1] = JdbcUtils.lookupColumnName(metaData, i);
+				shape.append(labels[i - 1]).append(',');
 			}
-			for (Entry<String, MapperField> entry : fieldMap.entrySet()) {
-				String column = entry.getKey();
-				if (!columnNames.contains(column)) {
-					continue;
+			Map<String, BindingPlan> plans = planCache.get(clazz);
+			if (plans == null) {
+				plans = new ConcurrentHashMap<String, BindingPlan>();
+				Map<String, BindingPlan> existing = planCache.putIfAbsent(clazz, plans);
+				if (existing != null) {
+					plans = existing;
 				}
-				MapperField mapperField = entry.getValue();
-				setValue(rowObj, mapperField, rs.getObject(column));
 			}
-			return rowObj;
+			String key = shape.toString();
+			BindingPlan plan = plans.get(key);
+			if (plan == null) {
+				plan = new BindingPlan(labels, fieldMap, instantiator);
+				if (plans.size() < MAX_PLANS) {
+					plans.put(key, plan);
+				}
+			}
+			current = new ResultSetPlan(rs, plan);
+			return plan;
 		}
-		private void setValue(Object rowObj, MapperField mapperField, Object dbValue) throws SQLException {
-			String setterName = getSetterName(mapperField.field.getName());
+		/**
+		 * 按字段类型读取列值．基本类型使用 getLong/getInt 等方法读取并直接写入，null 值保留字段默认值．
+		 * 特化的类型转换器的结果写入包装类型字段时，SQL NULL 写入 null．
+		 */
+		private void setValue(Object rowObj, MapperField mapperField, ResultSet rs, int index) throws SQLException {
+			FieldAccessor accessor = mapperField.accessor;
 			try {
-				Method setterMethod = getDeclaredMethod(clazz, setterName, mapperField.field.getType());
-				if (setterMethod == null) {
-					throw new NoSuchMethodException(clazz.getName() + "." + setterName);
+				switch (mapperField.readType) {
+				case LONG: {
+					long v = rs.getLong(index);
+					if (!rs.wasNull()) {
+						accessor.setLong(rowObj, v);
+					}
+					return;
+				}
+				case INT: {
+					int v = rs.getInt(index);
+					if (!rs.wasNull()) {
+						accessor.setInt(rowObj, v);
+					}
+					return;
 				}
-				Class<? extends TypeConverter> typeConverter = mapperField.typeConverter;
-				if (typeConverter == null || DefaultConverter.class.equals(typeConverter)) {
-					setterMethod.invoke(rowObj, dbValue);
+				case SHORT: {
+					short v = rs.getShort(index);
+					if (!rs.wasNull()) {
+						accessor.setShort(rowObj, v);
+					}
 					return;
 				}
-				TypeConverter converterObj = converterCache.get(typeConverter);
-				if (converterObj == null) {
-					converterObj = typeConverter.newInstance();
-					converterCache.put(typeConverter, converterObj);
+				case BYTE: {
+					byte v = rs.getByte(index);
+					if (!rs.wasNull()) {
+						accessor.setByte(rowObj, v);
+					}
+					return;
 				}
-				setterMethod.invoke(rowObj, converterObj.convert(dbValue));
-			} catch (Exception e) {
-				throw new SQLException("Set value error. The setter method name:" + setterName, e);
+				case DOUBLE: {
+					double v = rs.getDouble(index);
+					if (!rs.wasNull()) {
+						accessor.setDouble(rowObj, v);
+					}
+					return;
+				}
+				case FLOAT: {
+					float v = rs.getFloat(index);
+					if (!rs.wasNull()) {
+						accessor.setFloat(rowObj, v);
+					}
+					return;
+				}
+				case BOOLEAN: {
+					boolean v = rs.getBoolean(index);
+					if (!rs.wasNull()) {
+						accessor.setBoolean(rowObj, v);
+					}
+					return;
+				}
+				case LONG_OBJECT: {
+					long v = rs.getLong(index);
+					accessor.set(rowObj, rs.wasNull() ? null : Long.valueOf(v));
+					return;
+				}
+				case INT_OBJECT: {
+					int v = rs.getInt(index);
+					accessor.set(rowObj, rs.wasNull() ? null : Integer.valueOf(v));
+					return;
+				}
+				case DOUBLE_OBJECT: {
+					double v = rs.getDouble(index);
+					accessor.set(rowObj, rs.wasNull() ? null : Double.valueOf(v));
+					return;
+				}
+				case STRING:
+					accessor.set(rowObj, rs.getString(index));
+					return;
+				case BIG_DECIMAL:
+					accessor.set(rowObj, rs.getBigDecimal(index));
+					return;
+				case CONVERT_LONG: {
+					long v = ((LongTypeConverter) mapperField.converter).convertLong(rs, index);
+					if (mapperField.primitive) {
+						accessor.setLong(rowObj, v);
+					} else {
+						accessor.set(rowObj, rs.wasNull() ? null : Long.valueOf(v));
+					}
+					return;
+				}
+				case CONVERT_INT: {
+					int v = ((IntTypeConverter) mapperField.converter).convertInt(rs, index);
+					if (mapperField.primitive) {
+						accessor.setInt(rowObj, v);
+					} else {
+						accessor.set(rowObj, rs.wasNull() ? null : Integer.valueOf(v));
+					}
+					return;
+				}
+				case CONVERT_BOOLEAN: {
+					boolean v = ((BooleanTypeConverter) mapperField.converter).convertBoolean(rs, index);
+					if (mapperField.primitive) {
+						accessor.setBoolean(rowObj, v);
+					} else {
+						accessor.set(rowObj, rs.wasNull() ? null : Boolean.valueOf(v));
+					}
+					return;
+				}
+				case CONVERT_ENUM:
+					accessor.set(rowObj, mapperField.readType.read(rs, index, mapperField.converter, mapperField.field.getType()));
+					return;
+				case CONVERT:
+					accessor.set(rowObj, mapperField.converter.convert(rs.getObject(index)));
+					return;
+				default:
+					accessor.set(rowObj, rs.getObject(index));
+					return;
+				}
+			} catch (SQLException e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new SQLException("Set value error. The setter method name:" + accessor.getSetterName(), e);
 			}
 		}
-		private String getSetterName(String fieldName) {
-			char[] arr = fieldName.toCharArray();
-			arr[0] = Character.toUpperCase(arr[0]);
-			return "set" + new String(arr);
-		}
 		public Mapper getMapper() {
 			return clazz.getAnnotation(Mapper.class);
 		}
 	}
 
+	/**
+	 * @param clazz 实体类
+	 * @return 已缓存的结果集形状数
+	 */
+	static int getPlanCount(Class<?> clazz) {
+		Map<String, BindingPlan> plans = planCache.get(clazz);
+		return plans == null ? 0 : plans.size();
+	}
+
+	/**
+	 * 结果集形状与实体的绑定关系：构造参数 → 列序号，列序号 → 字段．字段只包含结果集中存在的列．
+	 */
+	private static class BindingPlan {
+		final int[] argIndexes;
+		final int[] columnIndexes;
+		final MapperField[] fields;
+		BindingPlan(String[] labels, Map<String, MapperField> fieldMap, Instantiator instantiator) {
+			CreatorParameter[] parameters = instantiator.getParameters();
+			Set<String> bound = new HashSet<String>();
+			this.argIndexes = new int[parameters.length];
+			for (int i = 0; i < parameters.length; i++) {
+				bound.add(parameters[i].column);
+				for (int j = 0; j < labels.length; j++) {
+					if (labels[j].equals(parameters[i].column)) {
+						argIndexes[i] = j + 1;
+						break;
+					}
+				}
+			}
+			List<Integer> indexes = new ArrayList<Integer>();
+			List<MapperField> fields = new ArrayList<MapperField>();
+			for (int i = 0; i < labels.length; i++) {
+				MapperField field = fieldMap.get(labels[i]);
+				// 同名列以第一个为准，与 ResultSet#getObject(String) 的行为一致．已经由构造参数接收的列不再写字段
+				if (field == null || !bound.add(labels[i])) {
+					continue;
+				}
+				// 通过构造参数创建的不可变对象，跳过不可写的字段
+				if (parameters.length > 0 && !field.accessor.isWritable()) {
+					continue;
+				}
+				indexes.add(i + 1);
+				fields.add(field);
+			}
+			this.columnIndexes = new int[indexes.size()];
+			for (int i = 0; i < columnIndexes.length; i++) {
+				columnIndexes[i] = indexes.get(i);
+			}
+			this.fields = fields.toArray(new MapperField[fields.size()]);
+		}
+	}
+
+	private static class ResultSetPlan {
+		final ResultSet rs;
+		final BindingPlan plan;
+		ResultSetPlan(ResultSet rs, BindingPlan plan) {
+			this.rs = rs;
+			this.plan = plan;
+		}
+	}
+
 	private static class MapperField {
-		Class<? extends TypeConverter> typeConverter;
+		TypeConverter converter;
 		Field field;
-		public MapperField(Field field, Class<? extends TypeConverter> typeConvert) {
+		FieldAccessor accessor;
+		ReadType readType;
+		boolean primitive;
+		public MapperField(Field field, TypeConverter converter, FieldAccessor accessor) {
 			this.field = field;
-			this.typeConverter = typeConvert;
+			this.converter = converter;
+			this.accessor = accessor;
+			this.readType = ReadType.of(field.getType(), converter);
+			this.primitive = field.getType().isPrimitive();
 		}
 	}
 	
@@ -153,16 +435,4 @@ public class MapperHelper {
 					"] from ClassLoader [" + clazz.getClassLoader() + "]", ex);
 		}
 	}
-	
-	private static Method getDeclaredMethod(Class<?> clazz, String name, Class<?>...parameterTypes) {
-		Class<?> targetClass = clazz;
-		do {
-			try {
-				return targetClass.getDeclaredMethod(name, parameterTypes);
-			} catch (NoSuchMethodException e) {
-				targetClass = targetClass.getSuperclass();
-			}
-		} while (targetClass != null && targetClass != Object.class);
-		return null;
-	}
 }
@@ -0,0 +1,21 @@
+package com.aswishes.spring.mapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 数值列转换为 boolean: 非 0 为 true，0 和 null 为 false．适用于 tinyint 等标志列，读取时不产生装箱．
+ * @author lizhou
+ */
+public class NumberBooleanConverter implements BooleanTypeConverter {
+
+	public Object convert(Object v) {
+		return v instanceof Number && ((Number) v).longValue() != 0;
+	}
+
+	@Override
+	public boolean convertBoolean(ResultSet rs, int index) throws SQLException {
+		return rs.getLong(index) != 0;
+	}
+
+}
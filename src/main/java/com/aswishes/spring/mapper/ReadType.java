@@ -0,0 +1,124 @@
+package com.aswishes.spring.mapper;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 列值的读取方式．CONVERT_* 表示使用特化的类型转换器，按基本类型读取．
+ * @author lizhou
+ */
+enum ReadType {
+	LONG, INT, SHORT, BYTE, DOUBLE, FLOAT, BOOLEAN,
+	LONG_OBJECT, INT_OBJECT, DOUBLE_OBJECT, STRING, BIG_DECIMAL,
+	CONVERT_LONG, CONVERT_INT, CONVERT_BOOLEAN, CONVERT_ENUM, CONVERT,
+	OBJECT;
+
+	static ReadType of(Class<?> type, TypeConverter converter) {
+		if (converter != null) {
+			return ofConverter(type, converter);
+		}
+		if (type == long.class) {
+			return LONG;
+		} else if (type == int.class) {
+			return INT;
+		} else if (type == short.class) {
+			return SHORT;
+		} else if (type == byte.class) {
+			return BYTE;
+		} else if (type == double.class) {
+			return DOUBLE;
+		} else if (type == float.class) {
+			return FLOAT;
+		} else if (type == boolean.class) {
+			return BOOLEAN;
+		} else if (type == Long.class) {
+			return LONG_OBJECT;
+		} else if (type == Integer.class) {
+			return INT_OBJECT;
+		} else if (type == Double.class) {
+			return DOUBLE_OBJECT;
+		} else if (type == String.class) {
+			return STRING;
+		} else if (type == BigDecimal.class) {
+			return BIG_DECIMAL;
+		}
+		return OBJECT;
+	}
+
+	private static ReadType ofConverter(Class<?> type, TypeConverter converter) {
+		if (converter instanceof LongTypeConverter && (type == long.class || type == Long.class)) {
+			return CONVERT_LONG;
+		} else if (converter instanceof IntTypeConverter && (type == int.class || type == Integer.class)) {
+			return CONVERT_INT;
+		} else if (converter instanceof BooleanTypeConverter && (type == boolean.class || type == Boolean.class)) {
+			return CONVERT_BOOLEAN;
+		} else if (converter instanceof EnumTypeConverter && type.isEnum()) {
+			return CONVERT_ENUM;
+		}
+		return CONVERT;
+	}
+
+	/**
+	 * 读取列值并装箱．用于构造器参数等必须以对象传递的场合，基本类型的 SQL NULL 返回 null．
+	 * 特化的类型转换器只在目标为包装类型时把 SQL NULL 返回为 null，基本类型使用转换器的结果．
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	Object read(ResultSet rs, int index, TypeConverter converter, Class<?> type) throws SQLException {
+		switch (this) {
+		case LONG:
+		case LONG_OBJECT: {
+			long v = rs.getLong(index);
+			return rs.wasNull() ? null : Long.valueOf(v);
+		}
+		case INT:
+		case INT_OBJECT: {
+			int v = rs.getInt(index);
+			return rs.wasNull() ? null : Integer.valueOf(v);
+		}
+		case SHORT: {
+			short v = rs.getShort(index);
+			return rs.wasNull() ? null : Short.valueOf(v);
+		}
+		case BYTE: {
+			byte v = rs.getByte(index);
+			return rs.wasNull() ? null : Byte.valueOf(v);
+		}
+		case DOUBLE:
+		case DOUBLE_OBJECT: {
+			double v = rs.getDouble(index);
+			return rs.wasNull() ? null : Double.valueOf(v);
+		}
+		case FLOAT: {
+			float v = rs.getFloat(index);
+			return rs.wasNull() ? null : Float.valueOf(v);
+		}
+		case BOOLEAN: {
+			boolean v = rs.getBoolean(index);
+			return rs.wasNull() ? null : Boolean.valueOf(v);
+		}
+		case STRING:
+			return rs.getString(index);
+		case BIG_DECIMAL:
+			return rs.getBigDecimal(index);
+		case CONVERT_LONG: {
+			long v = ((LongTypeConverter) converter).convertLong(rs, index);
+			return !type.isPrimitive() && rs.wasNull() ? null : Long.valueOf(v);
+		}
+		case CONVERT_INT: {
+			int v = ((IntTypeConverter) converter).convertInt(rs, index);
+			return !type.isPrimitive() && rs.wasNull() ? null : Integer.valueOf(v);
+		}
+		case CONVERT_BOOLEAN: {
+			boolean v = ((BooleanTypeConverter) converter).convertBoolean(rs, index);
+			return !type.isPrimitive() && rs.wasNull() ? null : Boolean.valueOf(v);
+		}
+		case CONVERT_ENUM:
+			return ((EnumTypeConverter) converter).convertEnum(rs, index, (Class) type);
+		case CONVERT:
+			return converter.convert(rs.getObject(index));
+		default:
+			return rs.getObject(index);
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package com.aswishes.spring.mapper;
+
+/**
+ * 开启脏数据跟踪的实体．通过 {@link MapperHelper#getMapper(Class)} 查询出的实体会保存一份列值快照，
+ * updateByPK 只更新与快照不同的列，没有变化时不执行 update．
+ * 快照保存在 transient 字段中，transient 字段不属于写入的列，不需要额外标注．如：
+ * <pre>
+ * private transient Object[] snapshot;
+ * </pre>
+ * @author lizhou
+ */
+public interface TrackedEntity {
+
+	/**
+	 * @return 查询或上次更新时的列值，与 {@link EntityMeta#getColumns()} 顺序一致．没有快照时为 null
+	 */
+	public Object[] getSnapshot();
+
+	/**
+	 * @param snapshot 列值快照
+	 */
+	public void setSnapshot(Object[] snapshot);
+}
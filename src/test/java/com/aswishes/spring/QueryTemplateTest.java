@@ -0,0 +1,52 @@
+package com.aswishes.spring;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class QueryTemplateTest {
+
+	@Test
+	public void testPositional() {
+		QueryTemplate template = QueryTemplate.create("select * from m_user where 1 = 1")
+				.appendIfNotNull("and age > ?")
+				.appendLikeIfNotBlank("and user_name like ?")
+				.appendIn("and id in")
+				.append("order by id");
+		QueryTemplate.Query query = template.bind(20, " ", Arrays.asList(1L, 2L));
+		assertEquals("select * from m_user where 1 = 1 and age > ? and id in (?,?) order by id ", query.getSql());
+		assertArrayEquals(new Object[] { 20, 1L, 2L }, query.getArgs());
+
+		QueryTemplate.Query other = template.bind(30, " ", new Object[] { 3L, 4L });
+		assertTrue(query.getSql() == other.getSql());
+		assertEquals(1, template.getCachedCount());
+
+		query = template.bind(null, "zh", null);
+		assertEquals("select * from m_user where 1 = 1 and user_name like ? order by id ", query.getSql());
+		assertArrayEquals(new Object[] { "%zh%" }, query.getArgs());
+		assertEquals(2, template.getCachedCount());
+	}
+
+	@Test
+	public void testNamed() {
+		QueryTemplate template = QueryTemplate.create("select * from m_user where 1 = 1")
+				.appendIfNotNull("and age > :age", "age")
+				.appendIn("and id in (:ids)", "ids");
+		QueryTemplate.Query query = template.bind(null, Arrays.asList(1L, 2L, 3L));
+		assertEquals("select * from m_user where 1 = 1 and id in (:ids) ", query.getSql());
+		assertEquals(0, query.getArgs().length);
+		assertEquals(Arrays.asList(1L, 2L, 3L), query.getParamMap().get("ids"));
+		assertEquals(1, query.getParamMap().size());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testChangeAfterBind() {
+		QueryTemplate template = QueryTemplate.create("select * from m_user");
+		template.bind();
+		template.append("order by id");
+	}
+}
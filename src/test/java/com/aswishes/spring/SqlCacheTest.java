@@ -0,0 +1,78 @@
+package com.aswishes.spring;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+public class SqlCacheTest {
+
+	@Test
+	public void testShape() {
+		SqlCache cache = new SqlCache(16);
+		String sql1 = select(cache, Restriction.eq("id", 1L), Restriction.eq("name", null), Restriction.in("age", 10, 20));
+		String sql2 = select(cache, Restriction.eq("id", 2L), Restriction.eq("name", null), Restriction.in("age", 30, 40));
+		assertEquals("select * from m_user where id = ? and age in(?,?)  ", sql1);
+		assertEquals(sql1, sql2);
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+
+		// 空值条件、in 的个数、连接符和排序都属于形状
+		assertEquals("select * from m_user where id = ? and name = ? and age in(?,?)  ",
+				select(cache, Restriction.eq("id", 1L), Restriction.eq("name", "zhangsan"), Restriction.in("age", 10, 20)));
+		assertEquals("select * from m_user where id = ? and age in(?,?,?)  ",
+				select(cache, Restriction.eq("id", 1L), Restriction.in("age", 10, 20, 30)));
+		assertEquals("select * from m_user where id = ? or age in(?,?)  ",
+				select(cache, Restriction.eq("id", 1L), Restriction.or(Restriction.in("age", 10, 20))));
+		assertEquals("select * from m_user where id = ? and age in(?,?) order by id desc  ",
+				select(cache, Restriction.eq("id", 1L), Restriction.in("age", 10, 20), Restriction.orderByDesc("id")));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(5, cache.getMissCount());
+	}
+
+	@Test
+	public void testClauseShape() {
+		SqlCache cache = new SqlCache(16);
+		List<Object> args = new ArrayList<Object>();
+		String sql1 = selectClause(cache, args, Restriction.eq("id", 1L), Restriction.eq("name", null), Restriction.in("age", 10, 20));
+		assertEquals("select * from m_user where id = ? and age in(?,?)  ", sql1);
+		assertEquals(Arrays.<Object>asList(1L, 10, 20), args);
+		args.clear();
+		assertEquals(sql1, selectClause(cache, args, Restriction.eq("id", 2L), Restriction.in("age", 30, 40)));
+		assertEquals(Arrays.<Object>asList(2L, 30, 40), args);
+		assertEquals(1, cache.getHitCount());
+
+		// and, or 的分组属于形状
+		assertEquals("select * from m_user where id = ? and (name = ? or age = ?)  ",
+				selectClause(cache, null, Restriction.eq("id", 1L), Restriction.group(Restriction.eq("name", "a"), Restriction.or(Restriction.eq("age", 1)))));
+		assertEquals("select * from m_user where id = ? and name = ? or age = ?  ",
+				selectClause(cache, null, Restriction.eq("id", 1L), Restriction.eq("name", "a"), Restriction.or(Restriction.eq("age", 1))));
+		assertEquals("select * from m_user where id = ? order by id desc  ",
+				selectClause(cache, null, Restriction.eq("id", 1L), Restriction.orderByDesc("id")));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(4, cache.getMissCount());
+	}
+
+	private static String selectClause(SqlCache cache, List<Object> args, Restriction... restrictions) {
+		final Predicate.Clause clause = Restriction.compile(restrictions);
+		return cache.get("select", "m_user", PredicateRenderer.shapeOf(clause, args, false), new Supplier<String>() {
+			@Override
+			public String get() {
+				return SqlHelper.select("m_user").columns("*").where(clause).toSqlString();
+			}
+		});
+	}
+
+	private static String select(SqlCache cache, final Restriction... restrictions) {
+		return cache.get("select", "m_user", restrictions, new Supplier<String>() {
+			@Override
+			public String get() {
+				return SqlHelper.select("m_user").columns("*").where(restrictions).toSqlString();
+			}
+		});
+	}
+}
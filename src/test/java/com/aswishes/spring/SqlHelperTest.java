@@ -1,6 +1,11 @@
 package com.aswishes.spring;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -17,6 +22,13 @@ public class SqlHelperTest {
 		assertEquals(expected, actual);
 	}
 
+	@Test
+	public void testInsertRows() {
+		String actual = SqlHelper.insert("m_user").columns(Arrays.asList("name", "age"), 3);
+		assertEquals("insert into m_user(name,age) values (?, ?),(?, ?),(?, ?)", actual);
+		assertEquals(SqlHelper.insert("m_user").columns("name", "age"), SqlHelper.insert("m_user").columns(Arrays.asList("name", "age"), 1));
+	}
+
 	@Test
 	public void testSelect() {
 		assertEquals("select * from m_user ",
@@ -42,6 +54,56 @@ public class SqlHelperTest {
 				select.toSqlString());
 	}
 
+	@Test
+	public void testInListPadding() {
+		Restriction[] padded = Restriction.padIn(Restriction.eq("id", 12L), Restriction.in("ids", 10L, 20L, 30L));
+		assertEquals("select * from m_user where id = ? and ids in(?,?,?,?)  ",
+				SqlHelper.select("m_user").columns("*").where(padded).toSqlString());
+		assertEquals(Arrays.<Object>asList(12L, 10L, 20L, 30L, 30L), Restriction.whereValueList(padded));
+
+		Restriction.setInListPadding(true);
+		try {
+			Restriction in = Restriction.in("ids", 10L, 20L, 30L, 40L, 50L);
+			assertEquals("select * from m_user where ids in(?,?,?,?,?,?,?,?)  ",
+					SqlHelper.select("m_user").columns("*").where(in).toSqlString());
+			assertEquals(8, Restriction.whereValueList(in).size());
+			assertEquals("ids in (?,?,?,?) ", SqlAppender.create(false).appendIn("ids in", Arrays.asList(1, 2, 3)).getSql());
+		} finally {
+			Restriction.setInListPadding(false);
+		}
+	}
+
+	@Test
+	public void testGroup() {
+		Restriction[] restrictions = { Restriction.eq("age", 20),
+				Restriction.group(Restriction.like("name", "zh"), Restriction.or(Restriction.isNull("name"))),
+				Restriction.eq("nick", null), Restriction.orderByDesc("id") };
+		Predicate.Clause clause = Restriction.compile(restrictions);
+		StringBuilder sql = new StringBuilder();
+		List<Object> args = new ArrayList<Object>();
+		clause.accept(new PredicateRenderer(sql, args, false));
+		assertEquals("age = ? and (name like ? or name is null) order by id desc ", sql.toString());
+		assertEquals(Arrays.<Object>asList(20, "%zh%"), args);
+		assertEquals(sql.toString(), Restriction.restrictionSql(restrictions));
+		assertEquals(args, Restriction.whereValueList(restrictions));
+	}
+
+	@Test
+	public void testBuffer() {
+		StringBuilder sb = SqlBuffer.acquire();
+		assertEquals("select * from m_user where id = ?  ",
+				SqlBuffer.release(SqlHelper.select("m_user").where(Restriction.eq("id", 1L)).appendTo(sb)));
+		assertTrue(sb == SqlBuffer.acquire());
+		assertTrue(sb != SqlBuffer.acquire());
+		SqlBuffer.release(sb);
+
+		SqlAppender appender = SqlAppender.create(true).append("select * from m_user where id = ?", 1L);
+		assertEquals("select * from m_user where id = ? ", appender.getSql());
+		appender.reset().appendIn("id in", Arrays.asList(1, 2));
+		assertEquals("id in (?,?)  ", appender.getSql());
+		assertEquals(Arrays.<Object>asList(1, 2), appender.getParamList());
+	}
+
 	@Test
 	public void testDelete() {
 		assertEquals("delete from m_user where id = ? and name = ? or ids in(?,?) ",
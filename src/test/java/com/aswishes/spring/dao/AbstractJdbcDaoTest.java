@@ -0,0 +1,634 @@
+package com.aswishes.spring.dao;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.aswishes.spring.KeysetCursor;
+import com.aswishes.spring.KeysetPageResult;
+import com.aswishes.spring.PageResult;
+import com.aswishes.spring.Predicate.Comparison;
+import com.aswishes.spring.Restriction;
+import com.aswishes.spring.id.TableIdGenerator;
+import com.aswishes.spring.mapper.EntityMeta;
+import com.aswishes.spring.mapper.Mapper;
+import com.aswishes.spring.mapper.MapperHelper;
+import com.aswishes.spring.mapper.TrackedEntity;
+
+public class AbstractJdbcDaoTest {
+	private JdbcTemplate jdbcTemplate;
+	private UserDao dao;
+
+	@Before
+	public void setUp() {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(
+				"jdbc:h2:mem:dao;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE", "sa", "");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("create table m_user (id bigint primary key, user_name varchar(32), age int)");
+		dao = new UserDao();
+		dao.setJdbcTemplate(jdbcTemplate);
+	}
+
+	@After
+	public void tearDown() {
+		jdbcTemplate.execute("drop table m_user");
+	}
+
+	@Test
+	public void testSaveAll() {
+		List<User> users = new ArrayList<User>();
+		for (long i = 1; i <= 5; i++) {
+			users.add(new User(i, "user" + i, i % 2 == 0 ? null : (int) i));
+		}
+		dao.setBatchSize(2);
+		dao.saveAll(users);
+		assertEquals(5, dao.getCount());
+		assertEquals(2, dao.getCount(Restriction.isNull("age")));
+	}
+
+	@Test
+	public void testSaveAllColumns() {
+		jdbcTemplate.execute("alter table m_user alter column age set default 18");
+		dao.setBatchSize(2);
+		dao.saveAll(Arrays.asList(new User(1L, "zhangsan", null), new User(2L, "lisi", 20), new User(3L, "wangwu", null)));
+		assertEquals(2, dao.getCount(Restriction.eq("age", 18)));
+
+		dao.saveAll(Arrays.asList(new User(4L, "zhaoliu", null), new User(5L, null, 30)), true);
+		assertEquals(1, dao.getCount(Restriction.eq("id", 4L), Restriction.isNull("age")));
+		assertEquals(1, dao.getCount(Restriction.eq("id", 5L), Restriction.isNull("user_name")));
+		assertEquals(5, dao.getCount());
+	}
+
+	@Test
+	public void testSaveAllAndGetId() {
+		jdbcTemplate.execute("create table m_auto (id bigint auto_increment primary key, user_name varchar(32), age int)");
+		try {
+			jdbcTemplate.update("insert into m_auto (user_name) values ('first')");
+			dao.setBatchSize(2);
+			List<AutoUser> users = new ArrayList<AutoUser>();
+			for (int i = 0; i < 5; i++) {
+				users.add(new AutoUser("user" + i, i % 2 == 0 ? null : i));
+			}
+			List<Long> ids = dao.saveAllAndGetId(users);
+			assertEquals(5, ids.size());
+			for (int i = 0; i < users.size(); i++) {
+				AutoUser user = users.get(i);
+				assertEquals(ids.get(i), user.id);
+				assertEquals(user.name, jdbcTemplate.queryForObject("select user_name from m_auto where id = ?", String.class, user.id));
+			}
+		} finally {
+			jdbcTemplate.execute("drop table m_auto");
+		}
+	}
+
+	@Test
+	public void testWriteByMeta() {
+		dao.save(new User(1L, "zhangsan", 20));
+		dao.save(new User(2L, "lisi", null));
+		dao.updateByPK(new User(1L, null, 21), true);
+		assertEquals("zhangsan", jdbcTemplate.queryForObject("select user_name from m_user where id = 1", String.class));
+		assertEquals(Integer.valueOf(21), jdbcTemplate.queryForObject("select age from m_user where id = 1", Integer.class));
+		dao.updateByPK(new User(1L, null, 22));
+		assertEquals(null, jdbcTemplate.queryForObject("select user_name from m_user where id = 1", String.class));
+		dao.deleteByPK(new User(2L, null, null));
+		assertEquals(1, dao.getCount());
+
+		EntityMeta<User> meta = EntityMeta.forClass(User.class);
+		assertTrue(meta == EntityMeta.forEntity(new User()));
+		assertArrayEquals(new String[] { "id", "user_name", "age" }, meta.getColumns());
+		assertTrue(meta.getDeleteSql("m_user") == meta.getDeleteSql("m_user"));
+		BitSet columns = meta.allColumns();
+		assertTrue(meta.getUpdateSql("m_user", columns) == meta.getUpdateSql("m_user", (BitSet) columns.clone()));
+	}
+
+	@Test
+	public void testMultiValuesInsert() {
+		dao.setInsertMode(AbstractJdbcDao.InsertMode.MULTI_VALUES);
+		dao.setMaxInsertParameters(7);
+		dao.setBatchSize(2);
+		List<User> users = new ArrayList<User>();
+		for (long i = 1; i <= 12; i++) {
+			users.add(new User(i, "user" + i, i == 5 ? null : (int) i));
+		}
+		// 3 列，每条语句 2 行：11 行的分组为 5 条多行语句和 1 条单行语句
+		dao.saveAll(users);
+		assertEquals(12, dao.getCount());
+		assertEquals(1, dao.getCount(Restriction.isNull("age")));
+		assertEquals(Integer.valueOf(12), jdbcTemplate.queryForObject("select age from m_user where id = 12", Integer.class));
+	}
+
+	@Test
+	public void testUpdateAllByPK() {
+		List<User> users = new ArrayList<User>();
+		for (long i = 1; i <= 5; i++) {
+			users.add(new User(i, "user" + i, (int) i));
+		}
+		dao.saveAll(users);
+		dao.setBatchSize(2);
+		int[] counts = dao.updateAllByPK(Arrays.asList(new User(3L, null, 30), new User(1L, "zhangsan", 10), new User(9L, "none", 90),
+				new User(2L, null, 20)), true);
+		assertArrayEquals(new int[] { 1, 1, 0, 1 }, counts);
+		assertEquals("user3", jdbcTemplate.queryForObject("select user_name from m_user where id = 3", String.class));
+		assertEquals(Integer.valueOf(30), jdbcTemplate.queryForObject("select age from m_user where id = 3", Integer.class));
+		assertEquals("zhangsan", jdbcTemplate.queryForObject("select user_name from m_user where id = 1", String.class));
+
+		counts = dao.updateAllByPK(Arrays.asList(new User(4L, null, 40), new User(5L, null, 50)));
+		assertArrayEquals(new int[] { 1, 1 }, counts);
+		assertEquals(2, dao.getCount(Restriction.isNull("user_name")));
+	}
+
+	@Test
+	public void testDeleteAll() {
+		List<User> users = new ArrayList<User>();
+		for (long i = 1; i <= 7; i++) {
+			users.add(new User(i, "user" + i, (int) i));
+		}
+		dao.saveAll(users);
+		dao.setDeleteChunkSize(2);
+		assertEquals(3, dao.deleteAll(User.class, Arrays.asList(1L, 2L, 3L, 99L)));
+		assertEquals(2, dao.deleteAllByPK(Arrays.asList(new User(4L, null, null), new User(5L, null, null))));
+		assertEquals(2, dao.getCount());
+
+		jdbcTemplate.execute("create table m_role (user_id bigint, role_id bigint, primary key (user_id, role_id))");
+		try {
+			jdbcTemplate.update("insert into m_role values (1, 1), (1, 2), (2, 1)");
+			UserDao noInfoDao = new UserDao() {
+				@Override
+				protected int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+					int[] counts = super.batchUpdate(sql, batchArgs);
+					Arrays.fill(counts, Statement.SUCCESS_NO_INFO);
+					return counts;
+				}
+			};
+			noInfoDao.setJdbcTemplate(jdbcTemplate);
+			assertEquals(2, noInfoDao.deleteAllByPK(Arrays.asList(new UserRole(1L, 2L), new UserRole(2L, 1L))));
+			assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject("select count(*) from m_role", Integer.class));
+		} finally {
+			jdbcTemplate.execute("drop table m_role");
+		}
+	}
+
+	@Test
+	public void testDirtyUpdate() {
+		dao.saveAll(Arrays.asList(new User(1L, "zhangsan", 20), new User(2L, "lisi", 30)));
+		assertArrayEquals(new String[] { "id", "user_name", "age" }, EntityMeta.forClass(TrackedUser.class).getColumns());
+		List<TrackedUser> users = dao.getList(MapperHelper.getMapper(TrackedUser.class), Restriction.orderByAsc("id"));
+		jdbcTemplate.update("update m_user set user_name = 'changed', age = 99 where id in (1, 2)");
+
+		users.get(0).age = 21;
+		dao.updateByPK(users.get(0));
+		assertEquals("changed", jdbcTemplate.queryForObject("select user_name from m_user where id = 1", String.class));
+		assertEquals(Integer.valueOf(21), jdbcTemplate.queryForObject("select age from m_user where id = 1", Integer.class));
+
+		dao.updateByPK(users.get(0));
+		dao.updateByPK(users.get(1));
+		assertEquals(Integer.valueOf(99), jdbcTemplate.queryForObject("select age from m_user where id = 2", Integer.class));
+		assertEquals(2, dao.getCount(Restriction.eq("user_name", "changed")));
+	}
+
+	@Test
+	public void testDeleteAllPadded() {
+		List<User> users = new ArrayList<User>();
+		for (long i = 1; i <= 7; i++) {
+			users.add(new User(i, "user" + i, (int) i));
+		}
+		dao.saveAll(users);
+		Restriction.setInListPadding(true);
+		try {
+			assertEquals(3, dao.deleteAll(User.class, Arrays.asList(1L, 2L, 3L)));
+			dao.setDeleteChunkSize(3);
+			assertEquals(3, dao.deleteAllByPK(Arrays.asList(new User(4L, null, null), new User(5L, null, null), new User(6L, null, null))));
+		} finally {
+			Restriction.setInListPadding(false);
+		}
+		dao.setInListPadding(true);
+		assertEquals(1, dao.deleteAll(User.class, Arrays.asList(7L, 8L, 9L)));
+		assertEquals(0, dao.getCount());
+	}
+
+	@Test
+	public void testPaddedChunks() {
+		List<User> users = new ArrayList<User>();
+		for (long i = 1; i <= 7; i++) {
+			users.add(new User(i, "user" + i, (int) i));
+		}
+		dao.saveAll(users);
+		CountingDataSource dataSource = new CountingDataSource(jdbcTemplate.getDataSource());
+		UserDao chunkDao = new UserDao();
+		chunkDao.setJdbcTemplate(new JdbcTemplate(dataSource));
+		chunkDao.setInListPadding(true);
+		chunkDao.setInListSplitSize(3);
+		chunkDao.setDeleteChunkSize(3);
+		List<Object> ids = Arrays.<Object>asList(1L, 2L, 3L, 4L, 5L, 6L, 7L);
+		assertEquals(7, chunkDao.getCount(Restriction.in("id", ids)));
+		assertEquals(7, chunkDao.deleteAll(User.class, ids));
+		assertEquals(8, dataSource.statements.size());
+		for (String sql : dataSource.statements) {
+			assertTrue(sql, sql.replaceAll("[^?]", "").length() <= 3);
+		}
+
+		assertEquals(1000, Restriction.inListBucket(1000));
+		assertEquals(1025, Restriction.inListBucket(1025));
+		assertEquals(2, Restriction.inListChunkSize(3));
+		assertEquals(1000, Restriction.inListChunkSize(1000));
+	}
+
+	@Test
+	public void testUpsert() {
+		dao.save(new User(1L, "zhangsan", 20));
+		dao.upsert(new User(1L, "lisi", 30));
+		dao.upsert(new User(2L, "wangwu", null));
+		List<User> users = dao.getList(MapperHelper.getMapper(User.class), Restriction.orderByAsc("id"));
+		assertEquals(2, users.size());
+		assertEquals("lisi", users.get(0).name);
+		assertEquals(Integer.valueOf(30), users.get(0).age);
+		assertEquals("wangwu", users.get(1).name);
+
+		int[] counts = dao.upsertAll(Arrays.asList(new User(2L, "zhaoliu", 40), new User(3L, "sunqi", 50)));
+		assertArrayEquals(new int[] { 1, 1 }, counts);
+		assertEquals(3, dao.getCount());
+		assertEquals(Integer.valueOf(40), jdbcTemplate.queryForObject("select age from m_user where id = 2", Integer.class));
+	}
+
+	@Test
+	public void testSplitIn() {
+		List<User> users = new ArrayList<User>();
+		List<Object> ids = new ArrayList<Object>();
+		for (long i = 1; i <= 10; i++) {
+			users.add(new User(i, "user" + i, (int) i));
+			ids.add(i);
+		}
+		dao.saveAll(users);
+		ids.add(1L);
+		ids.add(99L);
+		dao.setInListSplitSize(3);
+		List<Long> expected = Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+		assertEquals(6, dao.getCount(Restriction.in("id", ids), Restriction.gt("age", 4)));
+		assertEquals(expected, sortedIds(dao.getList(MapperHelper.getMapper(User.class), Restriction.in("id", ids))));
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			dao.setInListExecutor(executor);
+			assertEquals(10, dao.getCount(Restriction.in("id", ids)));
+			assertEquals(expected, sortedIds(dao.getList(MapperHelper.getMapper(User.class), Restriction.in("id", ids), Restriction.orderByAsc("id"))));
+		} finally {
+			executor.shutdown();
+		}
+		dao.delete(Restriction.in("id", ids), Restriction.le("age", 5));
+		assertEquals(5, dao.getCount());
+	}
+
+	/** 拆分后的结果按块拼接，排序后比较 */
+	private static List<Long> sortedIds(List<User> users) {
+		List<Long> ids = new ArrayList<Long>();
+		for (User user : users) {
+			ids.add(user.id);
+		}
+		Collections.sort(ids);
+		return ids;
+	}
+
+	@Test
+	public void testPage() {
+		List<User> users = new ArrayList<User>();
+		for (long i = 1; i <= 7; i++) {
+			users.add(new User(i, "user" + i, (int) i));
+		}
+		dao.saveAll(users);
+		PageResult<User> page = dao.getPage(MapperHelper.getMapper(User.class), 3, 3, Restriction.orderByAsc("id"));
+		assertEquals(7, page.getTotalCount());
+		assertEquals(1, page.getResult().size());
+		assertEquals(Long.valueOf(7), page.getResult().get(0).id);
+		assertEquals(2, dao.getList(2, 2, Restriction.gt("age", 2), Restriction.orderByAsc("id")).size());
+	}
+
+	@Test
+	public void testKeysetPage() {
+		List<User> users = new ArrayList<User>();
+		for (long i = 1; i <= 7; i++) {
+			users.add(new User(i, "user" + i, (int) (i + 1) / 2));
+		}
+		dao.saveAll(users);
+		RowMapper<User> mapper = MapperHelper.getMapper(User.class);
+		Restriction[] restrictions = { Restriction.gt("id", 1L), Restriction.orderByDesc("age"), Restriction.orderByAsc("id") };
+		List<Long> ids = new ArrayList<Long>();
+		String cursor = null;
+		int pages = 0;
+		do {
+			KeysetPageResult<User> page = dao.getKeysetPage(mapper, cursor, 2, restrictions);
+			for (User user : page.getResult()) {
+				ids.add(user.id);
+			}
+			cursor = page.getNextCursor();
+			pages++;
+		} while (cursor != null);
+		assertEquals(Arrays.asList(7L, 5L, 6L, 3L, 4L, 2L), ids);
+		assertEquals(3, pages);
+
+		KeysetPageResult<Map<String, Object>> first = dao.getKeysetPage(null, 4, Restriction.orderByAsc("id"));
+		try {
+			dao.getKeysetPage(first.getNextCursor(), 4, Restriction.orderByDesc("id"));
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			dao.getKeysetPage(first.getNextCursor(), 4, Restriction.orderByAsc("m_user.id"));
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		assertEquals(4, dao.getKeysetPage(null, 4, Restriction.orderByAsc("m_user.id")).getResult().size());
+		try {
+			dao.getKeysetPage(null, 4, Restriction.orderByAsc("age + id"));
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testKeysetPageByTimestamp() {
+		jdbcTemplate.execute("alter table m_user add column created timestamp");
+		for (long i = 1; i <= 5; i++) {
+			jdbcTemplate.update("insert into m_user (id, created) values (?, ?)", i, Timestamp.valueOf("2024-01-0" + (6 - (i + 1) / 2) + " 10:00:00.123456"));
+		}
+		Restriction[] restrictions = { Restriction.orderByAsc("created"), Restriction.orderByAsc("id") };
+		List<Object> ids = new ArrayList<Object>();
+		String cursor = null;
+		do {
+			KeysetPageResult<Map<String, Object>> page = dao.getKeysetPage(cursor, 2, restrictions);
+			for (Map<String, Object> row : page.getResult()) {
+				ids.add(row.get("id"));
+			}
+			cursor = page.getNextCursor();
+		} while (cursor != null);
+		assertEquals(Arrays.<Object>asList(5L, 3L, 4L, 1L, 2L), ids);
+
+		List<Comparison> orders = Restriction.compile(Restriction.orderByAsc("a"), Restriction.orderByAsc("b"), Restriction.orderByDesc("c")).getOrders();
+		Object[] keys = { LocalDate.of(2024, 1, 2), LocalDateTime.of(2024, 1, 2, 3, 4, 5, 6), OffsetDateTime.of(2024, 1, 2, 3, 4, 5, 6, ZoneOffset.ofHours(8)) };
+		assertArrayEquals(keys, KeysetCursor.decode(KeysetCursor.encode(orders, keys), orders));
+	}
+
+	@Test
+	public void testIdGenerator() {
+		jdbcTemplate.execute("create table id_sequence (name varchar(64) primary key, next_val bigint not null)");
+		try {
+			dao.setIdGenerator(new TableIdGenerator(jdbcTemplate, 10));
+			List<User> users = new ArrayList<User>();
+			for (int i = 0; i < 25; i++) {
+				users.add(new User(null, "user" + i, i));
+			}
+			dao.saveAll(users);
+			assertEquals(Long.valueOf(1), users.get(0).id);
+			assertEquals(Long.valueOf(25), users.get(24).id);
+			assertEquals(Long.valueOf(26), dao.saveAndGetId(new User(null, "lisi", null)));
+			assertEquals(26, dao.getCount());
+			assertEquals(Long.valueOf(31), jdbcTemplate.queryForObject("select next_val from id_sequence where name = 'm_user'", Long.class));
+		} finally {
+			jdbcTemplate.execute("drop table id_sequence");
+		}
+	}
+
+	@Test
+	public void testWriteBehind() throws Exception {
+		final WriteBehindBuffer<User> buffer = new WriteBehindBuffer<User>(dao, 8, 50).start();
+		final List<CompletableFuture<Void>> futures = new CopyOnWriteArrayList<CompletableFuture<Void>>();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final long base = t * 100;
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (long i = 1; i <= 10; i++) {
+						futures.add(buffer.submit(new User(base + i, "user" + i, null)));
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		futures.get(0).get(5, TimeUnit.SECONDS);
+		buffer.close();
+		for (CompletableFuture<Void> future : futures) {
+			assertTrue(future.isDone() && !future.isCompletedExceptionally());
+		}
+		assertEquals(40, dao.getCount());
+	}
+
+	@Test
+	public void testWriteBehindStopped() throws Exception {
+		UserDao failing = new UserDao() {
+			@Override
+			public <T> void saveAll(Collection<T> entities) {
+				throw new OutOfMemoryError("test");
+			}
+		};
+		WriteBehindBuffer<User> buffer = new WriteBehindBuffer<User>(failing, 8, 0).start();
+		CompletableFuture<Void> future = buffer.submit(new User(1L, "zhangsan", null));
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof OutOfMemoryError);
+		}
+		buffer.close();
+		try {
+			buffer.submit(new User(2L, "lisi", null));
+			fail();
+		} catch (IllegalStateException e) {
+		}
+
+		WriteBehindBuffer<User> unstarted = new WriteBehindBuffer<User>(dao, 8, 0);
+		future = unstarted.submit(new User(3L, "wangwu", null));
+		unstarted.close();
+		assertTrue(future.isCompletedExceptionally());
+		assertEquals(0, dao.getCount());
+	}
+
+	@Test
+	public void testStreamClosedEarly() {
+		List<User> users = new ArrayList<User>();
+		for (long i = 1; i <= 5; i++) {
+			users.add(new User(i, "user" + i, (int) i));
+		}
+		dao.saveAll(users);
+		CountingDataSource dataSource = new CountingDataSource(jdbcTemplate.getDataSource());
+		UserDao streamDao = new UserDao();
+		streamDao.setJdbcTemplate(new JdbcTemplate(dataSource));
+		Stream<User> stream = streamDao.stream(MapperHelper.getMapper(User.class), Restriction.gt("age", 0), Restriction.orderByAsc("id"));
+		Iterator<User> it = stream.iterator();
+		assertEquals(Long.valueOf(1), it.next().id);
+		assertEquals(1, dataSource.open.get());
+		assertEquals(Arrays.asList(Boolean.FALSE), dataSource.queryAutoCommit);
+		stream.close();
+		assertEquals(0, dataSource.open.get());
+		assertEquals(Arrays.asList(Boolean.TRUE), dataSource.closeAutoCommit);
+
+		final List<Long> ids = new ArrayList<Long>();
+		streamDao.forEach("select * from m_user where age > ? order by id", MapperHelper.getMapper(User.class), new Consumer<User>() {
+			@Override
+			public void accept(User user) {
+				ids.add(user.id);
+			}
+		}, new SqlParameterValue(Types.INTEGER, 3));
+		assertEquals(Arrays.asList(4L, 5L), ids);
+		assertEquals(0, dataSource.open.get());
+		assertEquals(Arrays.asList(Boolean.FALSE, Boolean.FALSE), dataSource.queryAutoCommit);
+		assertEquals(Arrays.asList(Boolean.TRUE, Boolean.TRUE), dataSource.closeAutoCommit);
+	}
+
+	/** 记录未关闭的连接数、执行的语句，以及执行语句和关闭连接时的自动提交状态 */
+	static class CountingDataSource extends DelegatingDataSource {
+		final AtomicInteger open = new AtomicInteger();
+		final List<Boolean> queryAutoCommit = new ArrayList<Boolean>();
+		final List<Boolean> closeAutoCommit = new ArrayList<Boolean>();
+		final List<String> statements = new ArrayList<String>();
+
+		CountingDataSource(DataSource target) {
+			super(target);
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			final Connection con = super.getConnection();
+			open.incrementAndGet();
+			return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class }, new InvocationHandler() {
+				private boolean closed = false;
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+					if ("close".equals(method.getName()) && !closed) {
+						closed = true;
+						open.decrementAndGet();
+						closeAutoCommit.add(con.getAutoCommit());
+					} else if ("prepareStatement".equals(method.getName())) {
+						queryAutoCommit.add(con.getAutoCommit());
+						statements.add((String) args[0]);
+					}
+					try {
+						return method.invoke(con, args);
+					} catch (InvocationTargetException e) {
+						throw e.getTargetException();
+					}
+				}
+			});
+		}
+	}
+
+	static class UserDao extends AbstractJdbcDao {
+		@Override
+		protected void setTableName() {
+			tableName = "m_user";
+		}
+	}
+
+	@Mapper(tableName = "m_user", primaryKey = "id")
+	public static class TrackedUser implements TrackedEntity {
+		private Long id;
+		@Mapper(name = "user_name")
+		private String name;
+		private Integer age;
+		private transient Object[] snapshot;
+
+		@Override
+		public Object[] getSnapshot() {
+			return snapshot;
+		}
+
+		@Override
+		public void setSnapshot(Object[] snapshot) {
+			this.snapshot = snapshot;
+		}
+	}
+
+	@Mapper(tableName = "m_role", primaryKey = { "user_id", "role_id" })
+	public static class UserRole {
+		@Mapper(name = "user_id")
+		private Long userId;
+		@Mapper(name = "role_id")
+		private Long roleId;
+
+		public UserRole() {
+		}
+
+		UserRole(Long userId, Long roleId) {
+			this.userId = userId;
+			this.roleId = roleId;
+		}
+	}
+
+	@Mapper(tableName = "m_auto", primaryKey = "id")
+	public static class AutoUser {
+		private Long id;
+		@Mapper(name = "user_name")
+		private String name;
+		private Integer age;
+
+		public AutoUser() {
+		}
+
+		AutoUser(String name, Integer age) {
+			this.name = name;
+			this.age = age;
+		}
+	}
+
+	@Mapper(primaryKey = "id")
+	public static class User {
+		private Long id;
+		@Mapper(name = "user_name")
+		private String name;
+		private Integer age;
+
+		public User() {
+		}
+
+		User(Long id, String name, Integer age) {
+			this.id = id;
+			this.name = name;
+			this.age = age;
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package com.aswishes.spring.dialect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DialectTest {
+	private static final String[] COLUMNS = { "id", "name", "age" };
+	private static final String[] PKS = { "id" };
+
+	@Test
+	public void testUpsert() {
+		assertEquals("insert into m_user(id,name,age) values (?, ?, ?) on duplicate key update name = values(name), age = values(age)",
+				new MySqlDialect().upsert("m_user", COLUMNS, PKS));
+		assertEquals("merge into m_user(id,name,age) key(id) values (?, ?, ?)",
+				new H2Dialect().upsert("m_user", COLUMNS, PKS));
+		assertEquals("insert into m_user(id,name,age) values (?, ?, ?) on conflict (id) do update set name = excluded.name, age = excluded.age",
+				new PostgreSqlDialect().upsert("m_user", COLUMNS, PKS));
+		assertEquals("merge into m_user t using (select ? id, ? name, ? age from dual) s on (t.id = s.id)"
+				+ " when matched then update set t.name = s.name, t.age = s.age"
+				+ " when not matched then insert (id, name, age) values (s.id, s.name, s.age)",
+				new OracleDialect().upsert("m_user", COLUMNS, PKS));
+	}
+
+	@Test
+	public void testOf() {
+		assertTrue(Dialects.of("MySQL") instanceof MySqlDialect);
+		assertTrue(Dialects.of("H2") instanceof H2Dialect);
+		assertTrue(Dialects.of("PostgreSQL") instanceof PostgreSqlDialect);
+		assertTrue(Dialects.of("Oracle") instanceof OracleDialect);
+		assertTrue(Dialects.of("Microsoft SQL Server") instanceof SqlServerDialect);
+	}
+
+	@Test
+	public void testLimit() {
+		String sql = "select * from m_user order by id";
+		assertEquals(sql + " limit ?, ?", new MySqlDialect().limit(sql, "?", "?"));
+		assertEquals(sql + " limit :rows offset :offset", new PostgreSqlDialect().limit(sql, ":offset", ":rows"));
+		assertEquals(sql + " offset ? rows fetch next ? rows only", new OracleDialect().limit(sql, "?", "?"));
+		assertEquals("select * from m_user order by (select null) offset ? rows fetch next ? rows only",
+				new SqlServerDialect().limit("select * from m_user", "?", "?"));
+	}
+}
@@ -0,0 +1,269 @@
+package com.aswishes.spring.mapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.beans.ConstructorProperties;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+public class MapperHelperTest {
+	private static JdbcTemplate jdbcTemplate;
+
+	@BeforeClass
+	public static void setUp() {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(
+				"jdbc:h2:mem:mapper;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE", "sa", "");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("create table m_user (id bigint primary key, user_name varchar(32), age int, enabled varchar(4))");
+		jdbcTemplate.update("insert into m_user values (1, 'zhangsan', 20, 'Y')");
+		jdbcTemplate.update("insert into m_user values (2, 'lisi', 30, 'N')");
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		jdbcTemplate.execute("drop table m_user");
+	}
+
+	@Test
+	public void testMapRow() {
+		List<User> users = jdbcTemplate.query("select * from m_user order by id", MapperHelper.getMapper(User.class));
+		assertEquals(2, users.size());
+		assertEquals(Long.valueOf(1), users.get(0).getId());
+		assertEquals("zhangsan", users.get(0).getName());
+		assertEquals(Integer.valueOf(20), users.get(0).getAge());
+		assertEquals(Boolean.TRUE, users.get(0).getEnabled());
+		assertEquals("lisi", users.get(1).getName());
+		assertEquals(Boolean.FALSE, users.get(1).getEnabled());
+	}
+
+	@Test
+	public void testMapRowOfDifferentShapes() {
+		RowMapper<User> mapper = MapperHelper.getMapper(User.class);
+		User user = jdbcTemplate.queryForObject("select user_name, id from m_user where id = 2", mapper);
+		assertEquals(Long.valueOf(2), user.getId());
+		assertEquals("lisi", user.getName());
+		assertNull(user.getAge());
+
+		user = jdbcTemplate.queryForObject("select cast(age as varchar) as user_name, id from m_user where id = 1", mapper);
+		assertEquals("20", user.getName());
+		assertNull(user.getEnabled());
+	}
+
+	@Test
+	public void testPlanCacheBounded() {
+		RowMapper<User> mapper = MapperHelper.getMapper(User.class);
+		for (int i = 0; i < MapperHelper.MAX_PLANS + 10; i++) {
+			User user = jdbcTemplate.queryForObject("select id, user_name, " + i + " as c" + i + " from m_user where id = 1", mapper);
+			assertEquals("zhangsan", user.getName());
+		}
+		assertEquals(MapperHelper.MAX_PLANS, MapperHelper.getPlanCount(User.class));
+	}
+
+	@Test
+	public void testMapPrimitiveRow() {
+		List<Counter> counters = jdbcTemplate.query("select id, age, cast(null as int) as total, id - 1 as level, id as adult from m_user order by id",
+				MapperHelper.getMapper(Counter.class));
+		assertEquals(1L, counters.get(0).id);
+		assertEquals(20, counters.get(0).age);
+		assertEquals(-1, counters.get(0).total);
+		assertEquals(Level.LOW, counters.get(0).level);
+		assertEquals(true, counters.get(0).adult);
+		assertEquals(30, counters.get(1).age);
+		assertEquals(Level.HIGH, counters.get(1).level);
+	}
+
+	@Test
+	public void testConvertNull() {
+		Flags flags = jdbcTemplate.queryForObject("select cast(null as int) as flag, cast(null as int) as active, cast(null as bigint) as level from m_user where id = 1",
+				MapperHelper.getMapper(Flags.class));
+		assertNull(flags.flag);
+		assertEquals(false, flags.active);
+		assertNull(flags.level);
+
+		User user = jdbcTemplate.queryForObject("select id, cast(2 as decimal(10, 2)) as enabled from m_user where id = 1", MapperHelper.getMapper(User.class));
+		assertEquals(Boolean.TRUE, user.getEnabled());
+	}
+
+	@Test
+	public void testMapImmutableRow() {
+		List<UserView> views = jdbcTemplate.query("select id, user_name, age from m_user order by id", MapperHelper.getMapper(UserView.class));
+		assertEquals(1L, views.get(0).id);
+		assertEquals("zhangsan", views.get(0).name);
+		assertEquals(Integer.valueOf(30), views.get(1).age);
+
+		UserName userName = jdbcTemplate.queryForObject("select user_name from m_user where id = 2", MapperHelper.getMapper(UserName.class));
+		assertEquals("lisi", userName.name);
+		assertEquals(0L, userName.id);
+	}
+
+	@Test
+	public void testUnnamedConstructor() {
+		try {
+			jdbcTemplate.queryForObject("select id, user_name from m_user where id = 1", MapperHelper.getMapper(Unnamed.class));
+			fail();
+		} catch (DataAccessException e) {
+			assertTrue(e.getMessage().contains("-parameters"));
+		}
+		try {
+			jdbcTemplate.queryForObject("select id from m_user where id = 1", MapperHelper.getMapper(Hidden.class));
+			fail();
+		} catch (DataAccessException e) {
+			assertTrue(e.getMessage().contains("No usable constructor"));
+		}
+	}
+
+	@Test
+	public void testMapThroughSetter() {
+		Account account = jdbcTemplate.queryForObject("select id, user_name from m_user where id = 1", MapperHelper.getMapper(Account.class));
+		assertEquals(1L, account.id);
+		assertEquals("ZHANGSAN", account.getName());
+	}
+
+	public static class NamedEntity {
+		@Mapper(name = "user_name")
+		private String name;
+
+		public String getName() {
+			return name;
+		}
+		private void setName(String name) {
+			this.name = name.toUpperCase();
+		}
+	}
+
+	public static class Account extends NamedEntity {
+		private long id;
+	}
+
+	public static class UserView {
+		private final long id;
+		@Mapper(name = "user_name")
+		private final String name;
+		private final Integer age;
+
+		@ConstructorProperties({ "id", "name", "age" })
+		public UserView(long id, String name, Integer age) {
+			this.id = id;
+			this.name = name;
+			this.age = age;
+		}
+	}
+
+	public static class Unnamed {
+		private final long id;
+		private final String name;
+
+		public Unnamed(long id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+	}
+
+	public static class Hidden {
+		private final long id;
+
+		private Hidden(long id) {
+			this.id = id;
+		}
+	}
+
+	public static class UserName {
+		private final long id;
+		private final String name;
+
+		private UserName(long id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+
+		@MapperCreator
+		public static UserName of(@Mapper(name = "id") long id, @Mapper(name = "user_name") String name) {
+			return new UserName(id, name);
+		}
+	}
+
+	public enum Level {
+		LOW, HIGH
+	}
+
+	public static class Flags {
+		@Mapper(typeConvert = NumberBooleanConverter.class)
+		private Boolean flag = Boolean.TRUE;
+		@Mapper(typeConvert = NumberBooleanConverter.class)
+		private boolean active = true;
+		@Mapper(typeConvert = ZeroLongConverter.class)
+		private Long level = 1L;
+	}
+
+	public static class ZeroLongConverter implements LongTypeConverter {
+		public Object convert(Object v) {
+			return v;
+		}
+
+		@Override
+		public long convertLong(ResultSet rs, int index) throws SQLException {
+			return rs.getLong(index);
+		}
+	}
+
+	public static class Counter {
+		private long id;
+		private int age;
+		private int total = -1;
+		@Mapper(typeConvert = EnumOrdinalConverter.class)
+		private Level level;
+		@Mapper(typeConvert = NumberBooleanConverter.class)
+		private boolean adult;
+
+		public void setAge(int age) {
+			this.age = age;
+		}
+	}
+
+	@Mapper(tableName = "m_user", primaryKey = "id")
+	public static class User {
+		private Long id;
+		@Mapper(name = "user_name")
+		private String name;
+		private Integer age;
+		@Mapper(typeConvert = BooleanConverter.class)
+		private Boolean enabled;
+
+		public Long getId() {
+			return id;
+		}
+		public void setId(Long id) {
+			this.id = id;
+		}
+		public String getName() {
+			return name;
+		}
+		public void setName(String name) {
+			this.name = name;
+		}
+		public Integer getAge() {
+			return age;
+		}
+		public void setAge(Integer age) {
+			this.age = age;
+		}
+		public Boolean getEnabled() {
+			return enabled;
+		}
+		public void setEnabled(Boolean enabled) {
+			this.enabled = enabled;
+		}
+	}
+}